@@ -3,6 +3,7 @@ package Customer.Beans;
 import Order.Beans.Order;
 import jakarta.persistence.*;
 import java.io.Serializable;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -10,7 +11,11 @@ import java.util.List;
  * Maps to the "customers" table in the database.
  */
 @Entity
-@Table(name = "customers")
+@Table(name = "customers", indexes = {
+    @Index(name = "idx_customers_name", columnList = "name"),
+    @Index(name = "idx_customers_email", columnList = "email"),
+    @Index(name = "idx_customers_phone", columnList = "phoneNumber")
+})
 public class Customer implements Serializable {
 
     /** Primary key, auto-generated */
@@ -38,6 +43,31 @@ public class Customer implements Serializable {
     @OneToMany(mappedBy = "customer", cascade = CascadeType.ALL)
     private List<Order> orders;
 
+    /**
+     * Number of orders placed by the customer.
+     * Maintained by OrderService together with every order change,
+     * so lists can show it without loading the orders.
+     */
+    private int orderCount;
+
+    /** Sum of the totals of all orders placed by the customer */
+    private double lifetimeValue;
+
+    /** Date of the customer's most recent order, null if none */
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastOrderDate;
+
+    /**
+     * RFM segment of the customer, e.g. "Champions" or "At risk".
+     * Written by CustomerSegmentationJob, null until it scored the customer.
+     */
+    @Column(length = 32)
+    private String segment;
+
+    /** Recency, frequency and monetary scores from 1 to 5, e.g. "545" */
+    @Column(length = 3)
+    private String rfmScore;
+
     /** Default constructor */
     public Customer() {}
 
@@ -130,4 +160,84 @@ public class Customer implements Serializable {
     public void setOrders(List<Order> orders) {
         this.orders = orders;
     }
+
+    /**
+     * Returns the number of orders placed by the customer
+     * @return orderCount
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Sets the number of orders placed by the customer
+     * @param orderCount number of orders
+     */
+    public void setOrderCount(int orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    /**
+     * Returns the sum of the totals of all the customer's orders
+     * @return lifetimeValue
+     */
+    public double getLifetimeValue() {
+        return lifetimeValue;
+    }
+
+    /**
+     * Sets the sum of the totals of all the customer's orders
+     * @param lifetimeValue total order value
+     */
+    public void setLifetimeValue(double lifetimeValue) {
+        this.lifetimeValue = lifetimeValue;
+    }
+
+    /**
+     * Returns the date of the customer's most recent order
+     * @return lastOrderDate, null if the customer has no orders
+     */
+    public Date getLastOrderDate() {
+        return lastOrderDate;
+    }
+
+    /**
+     * Sets the date of the customer's most recent order
+     * @param lastOrderDate date of the most recent order
+     */
+    public void setLastOrderDate(Date lastOrderDate) {
+        this.lastOrderDate = lastOrderDate;
+    }
+
+    /**
+     * Returns the customer's RFM segment
+     * @return segment, null if not scored yet
+     */
+    public String getSegment() {
+        return segment;
+    }
+
+    /**
+     * Sets the customer's RFM segment
+     * @param segment segment label
+     */
+    public void setSegment(String segment) {
+        this.segment = segment;
+    }
+
+    /**
+     * Returns the customer's recency, frequency and monetary scores
+     * @return rfmScore, null if not scored yet
+     */
+    public String getRfmScore() {
+        return rfmScore;
+    }
+
+    /**
+     * Sets the customer's recency, frequency and monetary scores
+     * @param rfmScore three digits from 1 to 5
+     */
+    public void setRfmScore(String rfmScore) {
+        this.rfmScore = rfmScore;
+    }
 }
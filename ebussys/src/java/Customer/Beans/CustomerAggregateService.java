@@ -0,0 +1,194 @@
+package Customer.Beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.UserTransaction;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maintains the per-customer order aggregates stored on Customer
+ * (order count, lifetime value, last order date).
+ *
+ * recordOrder() and removeOrder() join the caller's transaction, so the
+ * aggregates always change together with the orders. They use atomic
+ * UPDATE statements rather than read-modify-write, so concurrent orders
+ * of the same customer cannot lose an increment.
+ *
+ * rebuild() recomputes every customer's aggregates from the orders table
+ * in the background, for backfilling existing data.
+ */
+@Named(value = "customerAggregates")
+@ApplicationScoped
+public class CustomerAggregateService implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(CustomerAggregateService.class.getName());
+
+    /** Customers recomputed per rebuild transaction */
+    private static final int REBUILD_CHUNK = 500;
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for the rebuild transactions */
+    @Resource
+    private UserTransaction utx;
+
+    /** Container executor running the rebuild */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Whether a rebuild is running */
+    private volatile boolean rebuilding;
+
+    /** Customers processed by the current or last rebuild */
+    private volatile long rebuiltCustomers;
+
+    /**
+     * Adds an order to a customer's aggregates inside the caller's transaction.
+     *
+     * @param customerId id of the ordering customer
+     * @param total total price of the order
+     * @param orderDate date of the order
+     */
+    public void recordOrder(Long customerId, double total, Date orderDate) {
+        recordOrders(customerId, 1, total, orderDate);
+    }
+
+    /**
+     * Adds several orders of one customer to its aggregates inside the
+     * caller's transaction, e.g. for a batch of imported orders.
+     *
+     * @param customerId id of the ordering customer
+     * @param count number of orders
+     * @param total sum of the order totals
+     * @param lastOrderDate date of the newest of the orders
+     */
+    public void recordOrders(Long customerId, int count, double total, Date lastOrderDate) {
+        em.createQuery("UPDATE Customer c SET c.orderCount = COALESCE(c.orderCount, 0) + :count, "
+                + "c.lifetimeValue = COALESCE(c.lifetimeValue, 0) + :total, "
+                + "c.lastOrderDate = CASE WHEN c.lastOrderDate IS NULL OR c.lastOrderDate < :date "
+                + "THEN :date ELSE c.lastOrderDate END "
+                + "WHERE c.id = :id")
+                .setParameter("count", count)
+                .setParameter("total", total)
+                .setParameter("date", lastOrderDate)
+                .setParameter("id", customerId)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes a deleted order from a customer's aggregates inside the
+     * caller's transaction. Must be called after the order was removed
+     * and flushed, so the last order date is recomputed without it.
+     *
+     * @param customerId id of the customer whose order was deleted
+     * @param total total price of the deleted order
+     */
+    public void removeOrder(Long customerId, double total) {
+        // Served by the (customer_id, orderDate) index
+        Date last = em.createQuery(
+                "SELECT MAX(o.orderDate) FROM Order o WHERE o.customer.id = :id", Date.class)
+                .setParameter("id", customerId)
+                .getSingleResult();
+        em.createQuery("UPDATE Customer c SET c.orderCount = COALESCE(c.orderCount, 1) - 1, "
+                + "c.lifetimeValue = COALESCE(c.lifetimeValue, 0) - :total, "
+                + "c.lastOrderDate = :last "
+                + "WHERE c.id = :id")
+                .setParameter("total", total)
+                .setParameter("last", last)
+                .setParameter("id", customerId)
+                .executeUpdate();
+    }
+
+    /**
+     * Starts recomputing the aggregates of all customers in the background.
+     * @return false if a rebuild is already running
+     */
+    public synchronized boolean rebuild() {
+        if (rebuilding) {
+            return false;
+        }
+        rebuilding = true;
+        rebuiltCustomers = 0;
+        executor.submit(this::runRebuild);
+        return true;
+    }
+
+    /**
+     * Recomputes the aggregates chunk by chunk in customer id order.
+     * Each chunk locks its customers first, so orders placed meanwhile
+     * either are counted by the chunk or update it after it commits.
+     */
+    private void runRebuild() {
+        try {
+            long lastId = 0;
+            while (true) {
+                utx.begin();
+                List<Customer> chunk = em.createQuery(
+                        "SELECT c FROM Customer c WHERE c.id > :last ORDER BY c.id", Customer.class)
+                        .setParameter("last", lastId)
+                        .setMaxResults(REBUILD_CHUNK)
+                        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                        .getResultList();
+                if (chunk.isEmpty()) {
+                    utx.commit();
+                    break;
+                }
+                long firstId = chunk.get(0).getId();
+                lastId = chunk.get(chunk.size() - 1).getId();
+
+                Map<Long, Object[]> totals = new HashMap<>();
+                for (Object[] row : em.createQuery(
+                        "SELECT o.customer.id, COUNT(o), SUM(o.quantity * o.unitPrice), MAX(o.orderDate) "
+                        + "FROM Order o WHERE o.customer.id BETWEEN :first AND :last GROUP BY o.customer.id",
+                        Object[].class)
+                        .setParameter("first", firstId)
+                        .setParameter("last", lastId)
+                        .getResultList()) {
+                    totals.put((Long) row[0], row);
+                }
+
+                for (Customer c : chunk) {
+                    Object[] row = totals.get(c.getId());
+                    c.setOrderCount(row == null ? 0 : ((Number) row[1]).intValue());
+                    c.setLifetimeValue(row == null ? 0 : ((Number) row[2]).doubleValue());
+                    c.setLastOrderDate(row == null ? null : (Date) row[3]);
+                }
+                utx.commit();
+                rebuiltCustomers += chunk.size();
+            }
+        } catch (Exception e) {
+            try {
+                utx.rollback();
+            } catch (Exception ex) {
+                // Log rollback error if needed
+            }
+            LOG.log(Level.SEVERE, "Customer aggregate rebuild failed", e);
+        } finally {
+            rebuilding = false;
+        }
+    }
+
+    // --- Status getters ---
+
+    public boolean isRebuilding() {
+        return rebuilding;
+    }
+
+    public long getRebuiltCustomers() {
+        return rebuiltCustomers;
+    }
+}
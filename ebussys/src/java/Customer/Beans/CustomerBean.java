@@ -1,6 +1,8 @@
 package Customer.Beans;
 
 import Order.Beans.Order;
+import Order.Beans.OrderDataModel;
+import Order.Beans.OrderSearchCriteria;
 import jakarta.annotation.Resource;
 import jakarta.enterprise.context.SessionScoped;
 import jakarta.inject.Named;
@@ -9,9 +11,13 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.UserTransaction;
 import jakarta.faces.application.FacesMessage;
 import jakarta.faces.context.FacesContext;
+import jakarta.inject.Inject;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Managed Bean for Customer entity operations.
@@ -21,6 +27,12 @@ import java.util.List;
 @SessionScoped
 public class CustomerBean implements Serializable {
 
+    /** Customers shown per page of search results */
+    private static final int SEARCH_PAGE_SIZE = 20;
+
+    /** Most matches a search keeps */
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
     /** EntityManager for JPA persistence */
     @PersistenceContext
     private EntityManager em;
@@ -29,17 +41,52 @@ public class CustomerBean implements Serializable {
     @Resource
     private UserTransaction utx;
 
+    /** Maintains the per-customer order aggregates */
+    @Inject
+    private CustomerAggregateService customerAggregates;
+
+    /** In-memory index over names, addresses, emails and phone numbers */
+    @Inject
+    private CustomerSearchIndex searchIndex;
+
+    /** Finds existing customers like the one being created */
+    @Inject
+    private CustomerDuplicateDetector duplicates;
+
+    /** Recency/frequency/monetary segmentation */
+    @Inject
+    private CustomerSegmentationJob segmentation;
+
     /** The currently selected or edited customer */
     private Customer currentCustomer;
 
-    /** The search input string for customer name */
+    /** The search input: a name or address fragment, an email or a phone number */
     private String searchName;
 
-    /** List to hold search results */
+    /** Customers on the current page of search results */
     private List<Customer> searchResults;
 
-    /** Cache of all customers */
-    private List<Customer> allCustomers;
+    /** Ids of all matches of the last search, best first */
+    private List<Long> searchIds;
+
+    /** Current page of search results, from 0 */
+    private int searchPage;
+
+    /** Order history of currentCustomer, newest first, one page at a time */
+    private OrderDataModel customerOrders;
+
+    /** Existing customers like the one being created, null if not checked */
+    private List<CustomerDuplicateDetector.Match> duplicateMatches;
+
+    /** Whether createCustomer() skips the duplicate check */
+    private boolean ignoreDuplicates;
+
+    /** Customers of the clusters of the last duplicate scan, and the clusters they were loaded for */
+    private List<List<Customer>> duplicateClusters;
+    private List<List<Long>> duplicateClusterIds;
+
+    /** Current page of the customer list; only that page is kept */
+    private CustomerDataModel customerPage = new CustomerDataModel();
 
     /** Success message to show after operations */
     private String successMessage;
@@ -81,19 +128,54 @@ public class CustomerBean implements Serializable {
     }
 
     /**
-     * Returns a cached list of all customers.
-     * Loads from DB if not cached.
+     * Returns the paging state of the customer list
+     * (page size, sort options, page number).
      */
-    public List<Customer> getAllCustomers() {
-        if (allCustomers == null) {
-            allCustomers = em.createQuery("SELECT c FROM Customer c", Customer.class).getResultList();
-        }
-        return allCustomers;
+    public CustomerDataModel getCustomerPage() {
+        return customerPage;
     }
 
-    /** Sets the cached list of all customers */
-    public void setAllCustomers(List<Customer> allCustomers) {
-        this.allCustomers = allCustomers;
+    /**
+     * Returns the customers on the current page of the customer list.
+     * Loads the first page if no page is loaded yet.
+     */
+    public List<Customer> getCustomerRows() {
+        return customerPage.getRows(em);
+    }
+
+    /**
+     * Returns the number of customers, from the search index rather
+     * than a COUNT on every render.
+     */
+    public long getCustomerCount() {
+        return searchIndex.getCustomerCount();
+    }
+
+    /**
+     * Shows the next page of the customer list.
+     * @return null to stay on the same page
+     */
+    public String nextCustomerPage() {
+        customerPage.next(em);
+        return null;
+    }
+
+    /**
+     * Shows the previous page of the customer list.
+     * @return null to stay on the same page
+     */
+    public String previousCustomerPage() {
+        customerPage.previous(em);
+        return null;
+    }
+
+    /**
+     * Applies changed page size or sort options and shows the first page.
+     * @return null to stay on the same page
+     */
+    public String firstCustomerPage() {
+        customerPage.first(em);
+        return null;
     }
 
     /** Gets the current success message */
@@ -106,21 +188,40 @@ public class CustomerBean implements Serializable {
         this.successMessage = successMessage;
     }
 
+    /** Gets the existing customers like the one being created */
+    public List<CustomerDuplicateDetector.Match> getDuplicateMatches() {
+        return duplicateMatches;
+    }
+
     /**
      * Persists the currentCustomer to the database.
+     * Stays on the page with a warning if existing customers share its
+     * email or phone number, or have a similar name and address.
      * Resets caches and messages on success.
      * Returns navigation outcome for customer list page with success message.
      */
     public String createCustomer() {
+        if (!ignoreDuplicates) {
+            duplicateMatches = duplicates.findDuplicates(getCurrentCustomer());
+            if (!duplicateMatches.isEmpty()) {
+                FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage(FacesMessage.SEVERITY_WARN, "This customer may already exist",
+                        "Use one of the customers below or create the customer anyway"));
+                return null;
+            }
+        }
         try {
             utx.begin();
             em.persist(getCurrentCustomer());
             utx.commit();
+            searchIndex.added(currentCustomer);
 
             successMessage = "Successfully created the customer: " + currentCustomer.getName();
             currentCustomer = null;
-            allCustomers = null;
+            customerPage.reset();
             searchResults = null;
+            searchIds = null;
+            duplicateMatches = null;
 
             return "listCustomers.xhtml?faces-redirect=true&success=true&message=" + successMessage;
 
@@ -137,18 +238,224 @@ public class CustomerBean implements Serializable {
     }
 
     /**
-     * Searches customers by name using LIKE query.
+     * Creates the customer although it looks like an existing one.
+     * @return navigation outcome of createCustomer()
+     */
+    public String createCustomerAnyway() {
+        ignoreDuplicates = true;
+        try {
+            return createCustomer();
+        } finally {
+            ignoreDuplicates = false;
+        }
+    }
+
+    /**
+     * Uses an existing customer instead of creating a duplicate; its
+     * blank fields are filled from the details entered.
+     * @param existing the customer to use
+     * @return navigation outcome for its details page, or null if error
+     */
+    public String useExistingCustomer(Customer existing) {
+        try {
+            duplicates.fillMissing(existing.getId(), getCurrentCustomer());
+        } catch (Exception e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error updating customer", e.getMessage()));
+            return null;
+        }
+        currentCustomer = null;
+        duplicateMatches = null;
+        customerPage.reset();
+        return viewCustomerDetails(existing.getId());
+    }
+
+    /**
+     * Starts checking all customers for duplicates in the background.
+     * @return null to stay on the same page
+     */
+    public String scanDuplicates() {
+        try {
+            if (duplicates.startScan()) {
+                FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage("Checking all customers for duplicates"));
+            } else {
+                FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage(FacesMessage.SEVERITY_WARN, "A duplicate check is already running", null));
+            }
+        } catch (IllegalStateException e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_WARN, e.getMessage(), null));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the customers of the duplicate clusters found by the last
+     * scan, loaded together in one query.
+     */
+    public List<List<Customer>> getDuplicateClusters() {
+        List<List<Long>> clusters = duplicates.getClusters();
+        if (duplicateClusters == null || duplicateClusterIds != clusters) {
+            List<Long> ids = new ArrayList<>();
+            clusters.forEach(ids::addAll);
+            Map<Long, Customer> found = new HashMap<>();
+            if (!ids.isEmpty()) {
+                for (Customer c : em.createQuery("SELECT c FROM Customer c WHERE c.id IN :ids", Customer.class)
+                        .setParameter("ids", ids)
+                        .getResultList()) {
+                    found.put(c.getId(), c);
+                }
+            }
+            duplicateClusters = new ArrayList<>();
+            for (List<Long> cluster : clusters) {
+                List<Customer> customers = new ArrayList<>();
+                for (Long id : cluster) {
+                    if (found.containsKey(id)) {
+                        customers.add(found.get(id));
+                    }
+                }
+                if (customers.size() > 1) {
+                    duplicateClusters.add(customers);
+                }
+            }
+            duplicateClusterIds = clusters;
+        }
+        return duplicateClusters;
+    }
+
+    /**
+     * Merges a cluster of duplicates into its oldest customer.
+     * @param cluster the customers to merge
+     * @return null to stay on the same page
+     */
+    public String mergeDuplicates(List<Customer> cluster) {
+        List<Long> ids = new ArrayList<>();
+        for (Customer c : cluster) {
+            ids.add(c.getId());
+        }
+        try {
+            long kept = duplicates.merge(ids);
+            customerPage.reset();
+            searchResults = null;
+            searchIds = null;
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage("Merged " + (ids.size() - 1) + " duplicates into customer " + kept));
+        } catch (Exception e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error merging customers", e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Searches customers by name, address, email or phone number and
+     * shows the first page of matches.
+     * Exact email and phone matches come first, then name matches, then
+     * address matches. Uses the CustomerSearchIndex, or the database
+     * while the index is loading and for texts too short for its
+     * trigrams.
      * If searchName is empty, resets searchResults to null.
      */
     public void searchCustomers() {
+        searchPage = 0;
         if (searchName == null || searchName.trim().isEmpty()) {
+            searchIds = null;
             searchResults = null;
+            return;
+        }
+        searchIds = new ArrayList<>();
+        if (searchIndex.isReady() && CustomerSearchIndex.isSearchable(searchName)) {
+            for (int id : searchIndex.search(searchName, MAX_SEARCH_RESULTS).getIds()) {
+                searchIds.add((long) id);
+            }
         } else {
-            searchResults = em.createQuery(
-                "SELECT c FROM Customer c WHERE LOWER(c.name) LIKE :name", Customer.class)
-                .setParameter("name", "%" + searchName.toLowerCase() + "%")
+            String term = CustomerSearchIndex.normalize(searchName);
+            searchIds = em.createQuery(
+                "SELECT c.id FROM Customer c WHERE LOWER(c.email) = :term "
+                + "OR LOWER(c.name) LIKE :like OR LOWER(c.address) LIKE :like ORDER BY c.id", Long.class)
+                .setParameter("term", term)
+                .setParameter("like", "%" + term + "%")
+                .setMaxResults(MAX_SEARCH_RESULTS)
                 .getResultList();
         }
+        loadSearchPage();
+    }
+
+    /**
+     * Shows the next page of search results.
+     * @return null to stay on the same page
+     */
+    public String nextSearchPage() {
+        if (searchPage + 1 < getSearchPageCount()) {
+            searchPage++;
+            loadSearchPage();
+        }
+        return null;
+    }
+
+    /**
+     * Shows the previous page of search results.
+     * @return null to stay on the same page
+     */
+    public String previousSearchPage() {
+        if (searchPage > 0) {
+            searchPage--;
+            loadSearchPage();
+        }
+        return null;
+    }
+
+    /**
+     * Loads the customers of the current page in rank order. Index hits
+     * are checked against the customer's fields, as a name can contain
+     * all trigrams of the search without containing the search itself.
+     */
+    private void loadSearchPage() {
+        int from = searchPage * SEARCH_PAGE_SIZE;
+        List<Long> ids = searchIds.subList(Math.min(from, searchIds.size()),
+                Math.min(from + SEARCH_PAGE_SIZE, searchIds.size()));
+        searchResults = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Customer> found = new HashMap<>();
+        for (Customer c : em.createQuery("SELECT c FROM Customer c WHERE c.id IN :ids", Customer.class)
+                .setParameter("ids", ids)
+                .getResultList()) {
+            found.put(c.getId(), c);
+        }
+        String term = CustomerSearchIndex.normalize(searchName);
+        String phone = CustomerSearchIndex.normalizePhone(searchName);
+        for (Long id : ids) {
+            Customer c = found.get(id);
+            if (c != null && (CustomerSearchIndex.normalize(c.getName()).contains(term)
+                    || CustomerSearchIndex.normalize(c.getAddress()).contains(term)
+                    || CustomerSearchIndex.normalizeEmail(c.getEmail()).equals(term)
+                    || (!phone.isEmpty() && CustomerSearchIndex.normalizePhone(c.getPhoneNumber()).equals(phone)))) {
+                searchResults.add(c);
+            }
+        }
+    }
+
+    /** Current page of search results, from 1 */
+    public int getSearchPage() {
+        return searchPage + 1;
+    }
+
+    /** Number of pages of search results */
+    public int getSearchPageCount() {
+        return searchIds == null ? 0 : Math.max(1, (searchIds.size() + SEARCH_PAGE_SIZE - 1) / SEARCH_PAGE_SIZE);
+    }
+
+    /** Number of matches of the last search */
+    public int getSearchTotal() {
+        return searchIds == null ? 0 : searchIds.size();
+    }
+
+    /** Whether the last search found more matches than it keeps */
+    public boolean isSearchTruncated() {
+        return getSearchTotal() >= MAX_SEARCH_RESULTS;
     }
 
     /**
@@ -162,12 +469,21 @@ public class CustomerBean implements Serializable {
 
     /**
      * Finds a customer by ID and navigates to their detail page.
+     * The customer and the first page of their newest orders are read
+     * in one query (the orders fetch their customer); only a customer
+     * without orders needs a second read. The orders collection of the
+     * customer is never loaded, as key accounts have tens of thousands.
      * Adds error message if customer not found.
      * @param customerId id of the customer to view
      * @return navigation outcome or null if error
      */
-    public String viewCustomerDetails(int customerId) {
-        this.currentCustomer = em.find(Customer.class, customerId);
+    public String viewCustomerDetails(long customerId) {
+        OrderSearchCriteria criteria = new OrderSearchCriteria();
+        criteria.setCustomerId(customerId);
+        customerOrders = new OrderDataModel(criteria);
+        customerOrders.first(em);
+        List<Order> newest = customerOrders.getRows(em);
+        this.currentCustomer = newest.isEmpty() ? em.find(Customer.class, customerId) : newest.get(0).getCustomer();
         if (currentCustomer != null) {
             return "customerDetails.xhtml?faces-redirect=true";
         } else {
@@ -178,13 +494,83 @@ public class CustomerBean implements Serializable {
     }
 
     /**
-     * Sets the currentCustomer directly and navigates to details page.
-     * Useful when the whole customer object is passed.
+     * Starts recomputing every customer's order count, lifetime value
+     * and last order date from the orders table in the background.
+     * @return null to stay on the same page
+     */
+    public String rebuildAggregates() {
+        if (customerAggregates.rebuild()) {
+            customerPage.reset();
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage("Rebuilding customer order totals"));
+        } else {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_WARN, "A rebuild is already running", null));
+        }
+        return null;
+    }
+
+    /**
+     * Starts segmenting the customers by recency, frequency and
+     * monetary value of their orders in the background.
+     * @return null to stay on the same page
+     */
+    public String segmentCustomers() {
+        if (segmentation.start()) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage("Segmenting customers"));
+        } else {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_WARN, "Segmentation is already running", null));
+        }
+        return null;
+    }
+
+    /**
+     * Navigates to the details page of the given customer.
+     * Useful when the whole customer object is passed; the customer is
+     * read again together with its newest orders.
      * @param customer the customer to view
      * @return navigation outcome
      */
     public String viewCustomer(Customer customer) {
-        this.currentCustomer = customer;
-        return "customerDetails.xhtml?faces-redirect=true";
+        return viewCustomerDetails(customer.getId());
+    }
+
+    /**
+     * Returns the paging state of the current customer's order history.
+     */
+    public OrderDataModel getCustomerOrders() {
+        return customerOrders;
+    }
+
+    /**
+     * Returns the current page of the current customer's orders,
+     * newest first; empty if no customer was opened.
+     */
+    public List<Order> getCustomerOrderRows() {
+        return customerOrders == null ? List.of() : customerOrders.getRows(em);
+    }
+
+    /**
+     * Shows the next, older page of the customer's orders.
+     * @return null to stay on the same page
+     */
+    public String nextCustomerOrders() {
+        if (customerOrders != null) {
+            customerOrders.next(em);
+        }
+        return null;
+    }
+
+    /**
+     * Shows the previous, newer page of the customer's orders.
+     * @return null to stay on the same page
+     */
+    public String previousCustomerOrders() {
+        if (customerOrders != null) {
+            customerOrders.previous(em);
+        }
+        return null;
     }
 }
@@ -0,0 +1,229 @@
+package Customer.Beans;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lazy, keyset (seek) paginated data model for the customer list.
+ *
+ * Only the rows of the current page are kept in the session. Pages are
+ * read by seeking past the sort key of the first or last row on the
+ * current page, with the id as tie-breaker, instead of using an OFFSET,
+ * so every page costs the same index range scan on the name, email or
+ * primary key index (see Customer) no matter how deep the user pages.
+ *
+ * Names and emails are required when a customer is created; the seek
+ * conditions do not match customers without one.
+ *
+ * The model does not hold an EntityManager; the owning bean passes its
+ * own in on every call.
+ */
+public class CustomerDataModel implements Serializable {
+
+    /** Columns the customer list can be sorted by */
+    public enum SortField { NAME, ID, EMAIL }
+
+    /** Page sizes offered in the UI */
+    private static final List<Integer> PAGE_SIZES = List.of(10, 20, 50, 100);
+
+    /** Number of rows per page */
+    private int pageSize = 20;
+
+    /** Sort column */
+    private SortField sortBy = SortField.NAME;
+
+    /** True for Z to A / highest id first */
+    private boolean descending;
+
+    /** Rows of the current page, null until loaded */
+    private List<Customer> rows;
+
+    /** 1-based number of the current page */
+    private int pageNumber = 1;
+
+    /** Whether a page exists after the current one */
+    private boolean hasNext;
+
+    /** Whether a page exists before the current one */
+    private boolean hasPrevious;
+
+    // --- Getters and Setters ---
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, Math.min(pageSize, 500));
+    }
+
+    public List<Integer> getPageSizes() {
+        return PAGE_SIZES;
+    }
+
+    public SortField getSortBy() {
+        return sortBy;
+    }
+
+    public void setSortBy(SortField sortBy) {
+        this.sortBy = sortBy == null ? SortField.NAME : sortBy;
+    }
+
+    public SortField[] getSortFields() {
+        return SortField.values();
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public boolean isHasPrevious() {
+        return hasPrevious;
+    }
+
+    // --- Paging ---
+
+    /**
+     * Returns the rows of the current page, loading the first page
+     * if nothing has been loaded yet.
+     *
+     * @param em EntityManager used for the query
+     * @return rows of the current page
+     */
+    public List<Customer> getRows(EntityManager em) {
+        if (rows == null) {
+            first(em);
+        }
+        return rows;
+    }
+
+    /**
+     * Loads the first page.
+     * @param em EntityManager used for the query
+     */
+    public void first(EntityManager em) {
+        List<Customer> page = fetch(em, null, true);
+        hasNext = trim(page, false);
+        hasPrevious = false;
+        pageNumber = 1;
+        rows = page;
+    }
+
+    /**
+     * Loads the page after the current one, if any.
+     * @param em EntityManager used for the query
+     */
+    public void next(EntityManager em) {
+        if (rows == null || rows.isEmpty() || !hasNext) {
+            return;
+        }
+        List<Customer> page = fetch(em, rows.get(rows.size() - 1), true);
+        if (page.isEmpty()) {
+            hasNext = false;
+            return;
+        }
+        hasNext = trim(page, false);
+        hasPrevious = true;
+        pageNumber++;
+        rows = page;
+    }
+
+    /**
+     * Loads the page before the current one, if any.
+     * Falls back to the first page when no more than a full page precedes it.
+     * @param em EntityManager used for the query
+     */
+    public void previous(EntityManager em) {
+        if (rows == null || rows.isEmpty() || !hasPrevious) {
+            return;
+        }
+        List<Customer> page = fetch(em, rows.get(0), false);
+        if (!trim(page, true)) {
+            first(em);
+            return;
+        }
+        Collections.reverse(page);
+        hasPrevious = true;
+        hasNext = true;
+        pageNumber = Math.max(1, pageNumber - 1);
+        rows = page;
+    }
+
+    /**
+     * Drops the current page so the next render reloads the first page.
+     */
+    public void reset() {
+        rows = null;
+    }
+
+    /**
+     * Cuts the look-ahead row off a fetched page.
+     *
+     * @param page fetched rows, at most pageSize + 1
+     * @param fromEnd true when the page was read backwards
+     * @return true if the look-ahead row was present
+     */
+    private boolean trim(List<Customer> page, boolean fromEnd) {
+        if (page.size() <= pageSize) {
+            return false;
+        }
+        page.remove(fromEnd ? page.size() - 1 : pageSize);
+        return true;
+    }
+
+    /**
+     * Reads up to pageSize + 1 rows next to the given anchor row.
+     *
+     * @param em EntityManager used for the query
+     * @param anchor row to seek from, or null to start at the beginning
+     * @param forward true to read rows after the anchor, false for rows before it
+     * @return fetched rows in query order
+     */
+    private List<Customer> fetch(EntityManager em, Customer anchor, boolean forward) {
+        boolean desc = descending == forward;
+        String op = desc ? "<" : ">";
+        String dir = desc ? " DESC" : " ASC";
+
+        StringBuilder jpql = new StringBuilder("SELECT c FROM Customer c");
+        String column = sortBy == SortField.NAME ? "c.name" : sortBy == SortField.EMAIL ? "c.email" : null;
+        if (column != null) {
+            if (anchor != null) {
+                jpql.append(" WHERE ").append(column).append(' ').append(op).append(" :key")
+                    .append(" OR (").append(column).append(" = :key AND c.id ").append(op).append(" :id)");
+            }
+            jpql.append(" ORDER BY ").append(column).append(dir).append(", c.id").append(dir);
+        } else {
+            if (anchor != null) {
+                jpql.append(" WHERE c.id ").append(op).append(" :id");
+            }
+            jpql.append(" ORDER BY c.id").append(dir);
+        }
+
+        TypedQuery<Customer> query = em.createQuery(jpql.toString(), Customer.class)
+                .setMaxResults(pageSize + 1);
+        if (anchor != null) {
+            query.setParameter("id", anchor.getId());
+            if (column != null) {
+                query.setParameter("key", sortBy == SortField.NAME ? anchor.getName() : anchor.getEmail());
+            }
+        }
+        return new ArrayList<>(query.getResultList());
+    }
+}
@@ -0,0 +1,565 @@
+package Customer.Beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.UserTransaction;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds duplicate customers.
+ *
+ * Candidates come from the blocking keys of the CustomerSearchIndex:
+ * customers with the same normalized email, phone number or phonetic
+ * name are looked up in its hash tables, without scanning the customers
+ * table. Candidates are then compared field by field; a pair is a
+ * duplicate if it shares the email or phone number, or if both the
+ * names and the addresses are nearly equal (see reasons()).
+ *
+ * findDuplicates() checks a new customer before it is persisted.
+ * startScan() checks the whole table in the background: the key tables
+ * are walked in parallel parts, the customers of each group are
+ * compared in parallel, and the duplicate pairs are joined into
+ * clusters, which can then be merged into their oldest customer.
+ */
+@Named(value = "customerDuplicates")
+@ApplicationScoped
+public class CustomerDuplicateDetector implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(CustomerDuplicateDetector.class.getName());
+
+    /** Largest group of customers sharing one key that is compared */
+    private static final int MAX_BLOCK = 50;
+
+    /** Customers read per query while scanning */
+    private static final int FETCH_CHUNK = 1000;
+
+    /** Clusters kept in the scan result */
+    private static final int MAX_CLUSTERS = 500;
+
+    /** Least similarity of two names or addresses to count as nearly equal */
+    private static final double SIMILAR = 0.85;
+
+    /** A customer that looks like a duplicate, with the reasons */
+    public static class Match implements Serializable {
+        private final Customer customer;
+        private final List<String> reasons;
+
+        Match(Customer customer, List<String> reasons) {
+            this.customer = customer;
+            this.reasons = reasons;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public List<String> getReasons() {
+            return reasons;
+        }
+
+        /** Reasons as one line for display */
+        public String getReasonText() {
+            return String.join(", ", reasons);
+        }
+    }
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for merges */
+    @Resource
+    private UserTransaction utx;
+
+    /** Container executor running the scan */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Blocking keys of all customers */
+    @Inject
+    private CustomerSearchIndex index;
+
+    /** Keeps the order aggregates of merged customers */
+    @Inject
+    private CustomerAggregateService customerAggregates;
+
+    // --- Scan state ---
+    private volatile boolean scanning;
+    private volatile long candidatePairs;
+    private volatile long duplicatePairs;
+    private volatile long skippedEntries;
+    private volatile List<List<Long>> clusters = List.of();
+    private volatile int clusterCount;
+
+    /**
+     * Returns the existing customers that look like duplicates of a new one.
+     * Falls back to exact email and phone queries while the index loads.
+     *
+     * @param customer the customer about to be created
+     * @return the likely duplicates, empty if there are none
+     */
+    public List<Match> findDuplicates(Customer customer) {
+        List<Customer> candidates;
+        if (index.isReady()) {
+            int[] ids = index.duplicateCandidates(customer.getName(), customer.getAddress(),
+                    customer.getEmail(), customer.getPhoneNumber(), MAX_BLOCK);
+            candidates = load(ids);
+        } else {
+            candidates = em.createQuery(
+                    "SELECT c FROM Customer c WHERE c.email = :email OR c.phoneNumber = :phone", Customer.class)
+                    .setParameter("email", customer.getEmail() == null ? "" : customer.getEmail().trim())
+                    .setParameter("phone", customer.getPhoneNumber() == null ? "" : customer.getPhoneNumber().trim())
+                    .setMaxResults(MAX_BLOCK)
+                    .getResultList();
+        }
+        List<Match> matches = new ArrayList<>();
+        for (Customer c : candidates) {
+            if (customer.getId() != null && customer.getId().equals(c.getId())) {
+                continue;
+            }
+            List<String> reasons = reasons(customer.getName(), customer.getAddress(), customer.getEmail(),
+                    customer.getPhoneNumber(), c.getName(), c.getAddress(), c.getEmail(), c.getPhoneNumber());
+            if (!reasons.isEmpty()) {
+                matches.add(new Match(c, reasons));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Fills the blank fields of an existing customer from the details
+     * entered for a new one, instead of creating a duplicate.
+     *
+     * @param customerId id of the existing customer
+     * @param entered the details entered
+     * @throws IllegalArgumentException if the customer does not exist
+     * @throws Exception if the update fails
+     */
+    public void fillMissing(long customerId, Customer entered) throws Exception {
+        Customer existing;
+        try {
+            utx.begin();
+            existing = em.find(Customer.class, customerId);
+            if (existing == null) {
+                throw new IllegalArgumentException("Customer " + customerId + " no longer exists");
+            }
+            copyMissing(entered, existing);
+            utx.commit();
+        } catch (Exception e) {
+            rollback();
+            throw e;
+        }
+        index.updated(existing);
+    }
+
+    /**
+     * Merges customers into the oldest of them: their orders and order
+     * aggregates move to it, it gets their details where its own are
+     * blank, and they are deleted.
+     *
+     * @param customerIds the customers to merge, at least two
+     * @return id of the customer kept
+     * @throws IllegalArgumentException if fewer than two of the customers exist
+     * @throws Exception if the merge fails
+     */
+    public long merge(List<Long> customerIds) throws Exception {
+        List<Long> ids = new ArrayList<>(customerIds);
+        Collections.sort(ids);
+        List<Long> mergedIds = new ArrayList<>();
+        Customer keep = null;
+        long keepId;
+        try {
+            utx.begin();
+            List<Customer> others = new ArrayList<>();
+            for (Long id : ids) {
+                Customer c = em.find(Customer.class, id);
+                if (c == null) {
+                    continue;
+                }
+                if (keep == null) {
+                    keep = c;
+                } else {
+                    others.add(c);
+                }
+            }
+            if (others.isEmpty()) {
+                throw new IllegalArgumentException("Fewer than two of the customers still exist");
+            }
+            keepId = keep.getId();
+            for (Customer other : others) {
+                em.createQuery("UPDATE Order o SET o.customer = :keep WHERE o.customer.id = :other")
+                        .setParameter("keep", keep)
+                        .setParameter("other", other.getId())
+                        .executeUpdate();
+                if (other.getOrderCount() > 0) {
+                    customerAggregates.recordOrders(keepId, other.getOrderCount(),
+                            other.getLifetimeValue(), other.getLastOrderDate());
+                }
+                copyMissing(other, keep);
+                // A bulk delete, so removing the customer does not cascade to the moved orders
+                em.createQuery("DELETE FROM Customer c WHERE c.id = :id")
+                        .setParameter("id", other.getId())
+                        .executeUpdate();
+                mergedIds.add(other.getId());
+            }
+            utx.commit();
+        } catch (Exception e) {
+            rollback();
+            throw e;
+        }
+        index.updated(keep);
+        for (Long id : mergedIds) {
+            index.removed(id);
+        }
+        removeFromClusters(ids);
+        return keepId;
+    }
+
+    /**
+     * Starts checking all customers for duplicates in the background.
+     * @return false if a scan is already running
+     * @throws IllegalStateException if the customer index is still loading
+     */
+    public synchronized boolean startScan() {
+        if (!index.isReady()) {
+            throw new IllegalStateException("The customer index is still loading, try again shortly");
+        }
+        if (scanning) {
+            return false;
+        }
+        scanning = true;
+        executor.submit(this::runScan);
+        return true;
+    }
+
+    /**
+     * Finds the candidate pairs in parallel parts of the key tables,
+     * reads their customers, compares the pairs in parallel and joins
+     * the duplicates into clusters.
+     */
+    private void runScan() {
+        long started = System.currentTimeMillis();
+        try {
+            int parts = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+            // 1. Candidate pairs, packed as smaller id << 32 | larger id
+            List<Callable<long[]>> walks = new ArrayList<>();
+            long[] skipped = new long[parts];
+            for (int part = 0; part < parts; part++) {
+                final int p = part;
+                walks.add(() -> {
+                    PairList pairs = new PairList();
+                    skipped[p] = index.forEachBlock(p, parts, MAX_BLOCK, block -> {
+                        for (int i = 0; i < block.length; i++) {
+                            for (int j = i + 1; j < block.length; j++) {
+                                pairs.add(((long) block[i] << 32) | block[j]);
+                            }
+                        }
+                    });
+                    return pairs.toArray();
+                });
+            }
+            PairList all = new PairList();
+            for (Future<long[]> walk : executor.invokeAll(walks)) {
+                all.addAll(walk.get());
+            }
+            long[] pairs = all.toSortedDistinct();
+            candidatePairs = pairs.length;
+            skippedEntries = Arrays.stream(skipped).sum();
+
+            // 2. The customers of the pairs
+            int[] ids = new int[pairs.length * 2];
+            for (int i = 0; i < pairs.length; i++) {
+                ids[2 * i] = (int) (pairs[i] >>> 32);
+                ids[2 * i + 1] = (int) pairs[i];
+            }
+            ids = Arrays.stream(ids).sorted().distinct().toArray();
+            Map<Integer, String[]> details = new HashMap<>();
+            for (int from = 0; from < ids.length; from += FETCH_CHUNK) {
+                List<Long> chunk = new ArrayList<>();
+                for (int i = from; i < Math.min(from + FETCH_CHUNK, ids.length); i++) {
+                    chunk.add((long) ids[i]);
+                }
+                for (Object[] row : em.createQuery(
+                        "SELECT c.id, c.name, c.address, c.email, c.phoneNumber FROM Customer c WHERE c.id IN :ids",
+                        Object[].class)
+                        .setParameter("ids", chunk)
+                        .getResultList()) {
+                    details.put(((Long) row[0]).intValue(),
+                            new String[] {(String) row[1], (String) row[2], (String) row[3], (String) row[4]});
+                }
+                em.clear();
+            }
+
+            // 3. Compare the pairs in parallel parts
+            List<Callable<long[]>> comparisons = new ArrayList<>();
+            for (int part = 0; part < parts; part++) {
+                final int from = (int) ((long) pairs.length * part / parts);
+                final int to = (int) ((long) pairs.length * (part + 1) / parts);
+                comparisons.add(() -> {
+                    PairList duplicates = new PairList();
+                    for (int i = from; i < to; i++) {
+                        String[] a = details.get((int) (pairs[i] >>> 32));
+                        String[] b = details.get((int) pairs[i]);
+                        if (a != null && b != null
+                                && !reasons(a[0], a[1], a[2], a[3], b[0], b[1], b[2], b[3]).isEmpty()) {
+                            duplicates.add(pairs[i]);
+                        }
+                    }
+                    return duplicates.toArray();
+                });
+            }
+            PairList duplicates = new PairList();
+            for (Future<long[]> comparison : executor.invokeAll(comparisons)) {
+                duplicates.addAll(comparison.get());
+            }
+            long[] found = duplicates.toArray();
+            duplicatePairs = found.length;
+
+            // 4. Clusters
+            List<List<Long>> result = clusters(found);
+            clusterCount = result.size();
+            clusters = Collections.unmodifiableList(
+                    new ArrayList<>(result.subList(0, Math.min(MAX_CLUSTERS, result.size()))));
+            LOG.log(Level.INFO, "Duplicate scan found {0} clusters in {1} ms",
+                    new Object[] {result.size(), System.currentTimeMillis() - started});
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Duplicate customer scan failed", e);
+        } finally {
+            scanning = false;
+        }
+    }
+
+    /**
+     * Joins duplicate pairs into clusters with a union-find over the
+     * ids, largest cluster first.
+     */
+    private static List<List<Long>> clusters(long[] pairs) {
+        Map<Integer, Integer> parent = new HashMap<>();
+        for (long pair : pairs) {
+            int a = find(parent, (int) (pair >>> 32));
+            int b = find(parent, (int) pair);
+            if (a != b) {
+                parent.put(Math.max(a, b), Math.min(a, b));
+            }
+        }
+        Map<Integer, List<Long>> groups = new HashMap<>();
+        for (Integer id : new ArrayList<>(parent.keySet())) {
+            groups.computeIfAbsent(find(parent, id), k -> new ArrayList<>()).add((long) id);
+        }
+        List<List<Long>> result = new ArrayList<>();
+        for (List<Long> group : groups.values()) {
+            if (group.size() > 1) {
+                Collections.sort(group);
+                result.add(group);
+            }
+        }
+        result.sort((a, b) -> a.size() != b.size() ? b.size() - a.size() : Long.compare(a.get(0), b.get(0)));
+        return result;
+    }
+
+    private static int find(Map<Integer, Integer> parent, int id) {
+        Integer p = parent.putIfAbsent(id, id);
+        if (p == null || p == id) {
+            return id;
+        }
+        int root = find(parent, p);
+        parent.put(id, root);
+        return root;
+    }
+
+    /**
+     * Compares two customers.
+     * @return why they look like duplicates, empty if they do not
+     */
+    static List<String> reasons(String nameA, String addressA, String emailA, String phoneA,
+            String nameB, String addressB, String emailB, String phoneB) {
+        List<String> reasons = new ArrayList<>(3);
+        String email = CustomerSearchIndex.normalizeEmail(emailA);
+        if (!email.isEmpty() && email.equals(CustomerSearchIndex.normalizeEmail(emailB))) {
+            reasons.add("same email");
+        }
+        String phone = CustomerSearchIndex.normalizePhone(phoneA);
+        if (!phone.isEmpty() && phone.equals(CustomerSearchIndex.normalizePhone(phoneB))) {
+            reasons.add("same phone number");
+        }
+        if (similarity(nameA, nameB) >= SIMILAR && similarity(addressA, addressB) >= SIMILAR) {
+            reasons.add("similar name and address");
+        }
+        return reasons;
+    }
+
+    /**
+     * Similarity of two texts from 0 to 1: one minus their edit distance
+     * over the longer length, ignoring case, spaces and punctuation.
+     */
+    static double similarity(String a, String b) {
+        String x = letters(a);
+        String y = letters(b);
+        int longer = Math.max(x.length(), y.length());
+        if (longer == 0) {
+            return 0;
+        }
+        if (Math.abs(x.length() - y.length()) > longer * (1 - SIMILAR)) {
+            return 0;  // too far apart to reach the threshold
+        }
+        int[] previous = new int[y.length() + 1];
+        int[] current = new int[y.length() + 1];
+        for (int j = 0; j <= y.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= x.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= y.length(); j++) {
+                int cost = x.charAt(i - 1) == y.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1 - (double) previous[y.length()] / longer;
+    }
+
+    private static String letters(String text) {
+        String normalized = CustomerSearchIndex.normalize(text);
+        StringBuilder letters = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i))) {
+                letters.append(normalized.charAt(i));
+            }
+        }
+        return letters.toString();
+    }
+
+    private List<Customer> load(int[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        List<Long> keys = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            keys.add((long) id);
+        }
+        return em.createQuery("SELECT c FROM Customer c WHERE c.id IN :ids", Customer.class)
+                .setParameter("ids", keys)
+                .getResultList();
+    }
+
+    private static void copyMissing(Customer from, Customer to) {
+        if (isBlank(to.getAddress())) {
+            to.setAddress(from.getAddress());
+        }
+        if (isBlank(to.getPhoneNumber())) {
+            to.setPhoneNumber(from.getPhoneNumber());
+        }
+        if (isBlank(to.getEmail())) {
+            to.setEmail(from.getEmail());
+        }
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    /** Drops merged customers from the clusters of the last scan */
+    private synchronized void removeFromClusters(List<Long> merged) {
+        List<List<Long>> remaining = new ArrayList<>();
+        for (List<Long> cluster : clusters) {
+            if (Collections.disjoint(cluster, merged)) {
+                remaining.add(cluster);
+            }
+        }
+        clusterCount -= clusters.size() - remaining.size();
+        clusters = Collections.unmodifiableList(remaining);
+    }
+
+    private void rollback() {
+        try {
+            utx.rollback();
+        } catch (Exception ex) {
+            // Log rollback error if needed
+        }
+    }
+
+    /** Growable list of packed id pairs */
+    private static final class PairList {
+        private long[] pairs = new long[64];
+        private int size;
+
+        void add(long pair) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = pair;
+        }
+
+        void addAll(long[] more) {
+            if (size + more.length > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(size * 2, size + more.length));
+            }
+            System.arraycopy(more, 0, pairs, size, more.length);
+            size += more.length;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(pairs, size);
+        }
+
+        long[] toSortedDistinct() {
+            long[] sorted = toArray();
+            Arrays.parallelSort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, distinct);
+        }
+    }
+
+    // --- Scan status getters ---
+
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    public long getCandidatePairs() {
+        return candidatePairs;
+    }
+
+    public long getDuplicatePairs() {
+        return duplicatePairs;
+    }
+
+    /** Key table entries skipped because too many customers shared the key */
+    public long getSkippedEntries() {
+        return skippedEntries;
+    }
+
+    /** Clusters of the last scan, largest first, at most MAX_CLUSTERS */
+    public List<List<Long>> getClusters() {
+        return clusters;
+    }
+
+    /** Number of clusters found by the last scan */
+    public int getClusterCount() {
+        return clusterCount;
+    }
+}
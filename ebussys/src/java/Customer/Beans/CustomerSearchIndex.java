@@ -0,0 +1,828 @@
+package Customer.Beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory search index over the customers, replacing the
+ * LOWER(c.name) LIKE '%x%' scan of the customers table.
+ *
+ * Names and addresses are indexed by trigram: for each three-character
+ * substring the index keeps the ids of the customers containing it, in
+ * a separate list per field. Ids are only ever appended in ascending
+ * order (customers are created with increasing ids), so each list is
+ * stored as varint-encoded gaps, about one to two bytes per entry, with
+ * a skip pointer every SKIP_INTERVAL entries for fast intersection.
+ * Customers removed by a merge of duplicates stay in the lists and are
+ * filtered out by a bit set of removed ids. Updated customers are indexed
+ * again under their new details, inserted into the lists; their old
+ * entries stay, and fail the callers' checks on the loaded customer.
+ *
+ * Emails, phone numbers and phonetic names (see phoneticName()) are
+ * normalized and kept in open-addressing hash tables of 64-bit hashes,
+ * a few bytes per customer; a hash hit is confirmed on the loaded
+ * customer. They serve exact lookups in search() and serve as the
+ * blocking keys of the CustomerDuplicateDetector.
+ *
+ * search() ranks exact email or phone matches first, then customers
+ * whose name contains every trigram of the text, then customers whose
+ * address does. Trigram hits are candidates: the caller checks the
+ * actual fields of the customers it loads (see CustomerBean).
+ *
+ * The index is loaded in the background at startup; until it is ready,
+ * isReady() is false and callers fall back to the database. Customers
+ * created, updated or removed meanwhile are queued and applied when the
+ * load finishes, as the load may already have read them.
+ * Thread-safe: searches share a read lock, changes take the write lock.
+ */
+@Named(value = "customerSearchIndex")
+@ApplicationScoped
+public class CustomerSearchIndex implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(CustomerSearchIndex.class.getName());
+
+    /** Entries between two skip pointers of a posting list */
+    private static final int SKIP_INTERVAL = 64;
+
+    /** Customers read per query while loading */
+    private static final int LOAD_CHUNK = 10_000;
+
+    /** How long a counted number of customers is reused while the index loads */
+    private static final long COUNT_TTL_MILLIS = 60_000;
+
+    /** Ids of one trigram in one field, as varint gaps */
+    private static final class Postings implements Serializable {
+        byte[] data = new byte[4];
+        int length;
+        int count;
+        int last;
+        /** Id of every SKIP_INTERVAL-th entry and the offset just after it */
+        int[] skipIds = new int[0];
+        int[] skipOffsets = new int[0];
+        int skips;
+
+        void append(int id) {
+            if (count > 0 && id <= last) {
+                return;
+            }
+            int gap = id - last;
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((gap & ~0x7F) != 0) {
+                data[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+            last = id;
+            count++;
+            if (count % SKIP_INTERVAL == 0) {
+                if (skips == skipIds.length) {
+                    skipIds = Arrays.copyOf(skipIds, Math.max(4, skips * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, skipIds.length);
+                }
+                skipIds[skips] = id;
+                skipOffsets[skips] = length;
+                skips++;
+            }
+        }
+
+        /** Adds an id anywhere in the list, rebuilding it if the id is not the largest */
+        void insert(int id) {
+            if (count == 0 || id > last) {
+                append(id);
+                return;
+            }
+            int[] ids = decode();
+            int at = Arrays.binarySearch(ids, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            length = 0;
+            count = 0;
+            last = 0;
+            skips = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == at) {
+                    append(id);
+                }
+                append(ids[i]);
+            }
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            int value = 0;
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += gap;
+                ids[i] = value;
+            }
+            return ids;
+        }
+
+        /**
+         * Keeps the candidates that are in this list.
+         * @param candidates sorted ids
+         * @return the sorted ids in both
+         */
+        int[] retain(int[] candidates) {
+            int[] result = new int[Math.min(candidates.length, count)];
+            int found = 0;
+            int skip = 0;
+            int pos = 0;
+            int value = 0;
+            int read = 0;
+            for (int candidate : candidates) {
+                // Jump over blocks that end before the candidate
+                while (skip < skips && skipIds[skip] < candidate) {
+                    if (skipOffsets[skip] > pos) {
+                        pos = skipOffsets[skip];
+                        value = skipIds[skip];
+                        read = (skip + 1) * SKIP_INTERVAL;
+                    }
+                    skip++;
+                }
+                while (read < count && value < candidate) {
+                    int gap = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[pos++];
+                        gap |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    value += gap;
+                    read++;
+                }
+                if (value == candidate && read > 0) {
+                    result[found++] = candidate;
+                }
+                if (read == count && value < candidate) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(result, found);
+        }
+    }
+
+    /**
+     * Open-addressing table from 64-bit key hashes to customer ids.
+     * Equal hashes may appear several times, e.g. for a shared phone number.
+     */
+    private static final class HashTable implements Serializable {
+        long[] hashes = new long[1024];
+        int[] ids = new int[1024];
+        int size;
+
+        void put(long hash, int id) {
+            if ((size + 1) * 2 > hashes.length) {
+                grow();
+            }
+            int mask = hashes.length - 1;
+            int slot = (int) mix(hash) & mask;
+            while (ids[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            ids[slot] = id;
+            size++;
+        }
+
+        int[] get(long hash) {
+            return get(hash, Integer.MAX_VALUE);
+        }
+
+        /** Puts the id under the hash unless it is already there */
+        void putIfAbsent(long hash, int id) {
+            if (Arrays.binarySearch(get(hash), id) < 0) {
+                put(hash, id);
+            }
+        }
+
+        /** Sorted ids under the hash; stops after limit ids, which are then unsorted */
+        int[] get(long hash, int limit) {
+            int mask = hashes.length - 1;
+            int slot = (int) mix(hash) & mask;
+            int[] found = new int[4];
+            int size = 0;
+            while (ids[slot] != 0 && size < limit) {
+                if (hashes[slot] == hash) {
+                    if (size == found.length) {
+                        found = Arrays.copyOf(found, size * 2);
+                    }
+                    found[size++] = ids[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            found = Arrays.copyOf(found, size);
+            if (size < limit) {
+                Arrays.sort(found);
+            }
+            return found;
+        }
+
+        private void grow() {
+            long[] oldHashes = hashes;
+            int[] oldIds = ids;
+            hashes = new long[oldHashes.length * 2];
+            ids = new int[oldIds.length * 2];
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0) {
+                    put(oldHashes[i], oldIds[i]);
+                }
+            }
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    /** Ranked result of a search */
+    public static class Result implements Serializable {
+        private final int[] ids;
+        private final int exactMatches;
+
+        Result(int[] ids, int exactMatches) {
+            this.ids = ids;
+            this.exactMatches = exactMatches;
+        }
+
+        /** Matching customer ids, best first */
+        public int[] getIds() {
+            return ids;
+        }
+
+        /** Number of leading ids found by exact email or phone */
+        public int getExactMatches() {
+            return exactMatches;
+        }
+    }
+
+    /** EntityManager for loading the index */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** Container executor running the load */
+    @Resource
+    private ManagedExecutorService executor;
+
+    private final Map<Long, Postings> names = new HashMap<>();
+    private final Map<Long, Postings> addresses = new HashMap<>();
+    private final HashTable emails = new HashTable();
+    private final HashTable phones = new HashTable();
+    private final HashTable phoneticNames = new HashTable();
+
+    /** Ids of customers removed by a merge */
+    private final BitSet removed = new BitSet();
+
+    private volatile int removedCustomers;
+
+    /** Counted customers and when they were counted, used until the index is loaded */
+    private volatile long countedCustomers = -1;
+    private volatile long countedAt;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+
+    /** Whether the load is running; guarded by pending */
+    private boolean loading;
+
+    /** Customers created while loading, added once the load is done */
+    private final List<Customer> pending = new ArrayList<>();
+
+    /** Customers updated while loading, indexed again once the load is done */
+    private final List<Customer> pendingUpdates = new ArrayList<>();
+
+    /** Customers removed while loading, marked once the load is done */
+    private final List<Long> pendingRemovals = new ArrayList<>();
+
+    private volatile int indexedCustomers;
+
+    /**
+     * Starts loading the index in the background.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        synchronized (pending) {
+            loading = true;
+        }
+        executor.submit(this::load);
+    }
+
+    /**
+     * Adds a newly created customer. Call after its transaction committed.
+     * @param customer the persisted customer
+     */
+    public void added(Customer customer) {
+        synchronized (pending) {
+            if (!ready) {
+                if (loading) {
+                    pending.add(customer);
+                }
+                return;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            addLocked(customer.getId().intValue(), customer.getName(), customer.getAddress(),
+                    customer.getEmail(), customer.getPhoneNumber());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a customer again after its details changed. Call after its
+     * transaction committed.
+     * @param customer the updated customer
+     */
+    public void updated(Customer customer) {
+        synchronized (pending) {
+            if (!ready) {
+                if (loading) {
+                    pendingUpdates.add(customer);
+                }
+                return;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            indexLocked(customer.getId().intValue(), customer.getName(), customer.getAddress(),
+                    customer.getEmail(), customer.getPhoneNumber(), true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a customer as removed, e.g. after it was merged into another.
+     * Call after its transaction committed.
+     * @param customerId id of the removed customer
+     */
+    public void removed(long customerId) {
+        synchronized (pending) {
+            if (!ready) {
+                if (loading) {
+                    pendingRemovals.add(customerId);
+                }
+                return;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked((int) customerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the customers sharing a blocking key with the given
+     * details: the same email, phone number or phonetic name.
+     *
+     * @param name name of the customer
+     * @param address address of the customer, part of the phonetic name key
+     * @param email email of the customer
+     * @param phone phone number of the customer
+     * @param limit maximum number of ids read per key
+     * @return ids of the candidates, without duplicates
+     * @throws IllegalStateException if the index is not loaded yet
+     */
+    public int[] duplicateCandidates(String name, String address, String email, String phone, int limit) {
+        if (!ready) {
+            throw new IllegalStateException("Customer index is still loading");
+        }
+        lock.readLock().lock();
+        try {
+            Set<Integer> seen = new HashSet<>();
+            List<Integer> ids = new ArrayList<>();
+            String e = normalizeEmail(email);
+            if (!e.isEmpty()) {
+                addAll(ids, seen, emails.get(hash(e), limit), Integer.MAX_VALUE);
+            }
+            String p = normalizePhone(phone);
+            if (!p.isEmpty()) {
+                addAll(ids, seen, phones.get(hash(p), limit), Integer.MAX_VALUE);
+            }
+            String n = phoneticName(name, address);
+            if (!n.isEmpty()) {
+                addAll(ids, seen, phoneticNames.get(hash(n), limit), Integer.MAX_VALUE);
+            }
+            return live(ids.stream().mapToInt(Integer::intValue).toArray());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls the action for every group of two or more customers sharing
+     * a blocking key, in one of several parts of the key tables, so the
+     * parts can be walked in parallel. Groups of more than maxBlock
+     * customers, e.g. a shared company phone number, are skipped.
+     *
+     * @param part the part to walk, from 0
+     * @param parts number of parts
+     * @param maxBlock largest group passed to the action
+     * @param action receives the sorted ids of each group
+     * @return number of table entries skipped as part of a larger group
+     */
+    public int forEachBlock(int part, int parts, int maxBlock, Consumer<int[]> action) {
+        if (!ready) {
+            throw new IllegalStateException("Customer index is still loading");
+        }
+        lock.readLock().lock();
+        try {
+            int skipped = 0;
+            for (HashTable table : new HashTable[] {emails, phones, phoneticNames}) {
+                int from = (int) ((long) table.ids.length * part / parts);
+                int to = (int) ((long) table.ids.length * (part + 1) / parts);
+                for (int slot = from; slot < to; slot++) {
+                    int id = table.ids[slot];
+                    if (id == 0 || removed.get(id)) {
+                        continue;
+                    }
+                    int[] block = table.get(table.hashes[slot], maxBlock + 1);
+                    if (block.length > maxBlock) {
+                        skipped++;
+                        continue;
+                    }
+                    block = live(block);
+                    // Each group is reported once, from the slot of its smallest id
+                    if (block.length > 1 && block[0] == id) {
+                        action.accept(block);
+                    }
+                }
+            }
+            return skipped;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the customers.
+     *
+     * @param text name or address fragment, email or phone number
+     * @param limit maximum number of ids returned
+     * @return matching ids, best first; empty for texts shorter than
+     *         three characters that are no email or phone number, see
+     *         isSearchable()
+     * @throws IllegalStateException if the index is not loaded yet
+     */
+    public Result search(String text, int limit) {
+        if (!ready) {
+            throw new IllegalStateException("Customer index is still loading");
+        }
+        String term = normalize(text);
+        lock.readLock().lock();
+        try {
+            Set<Integer> seen = new HashSet<>();
+            List<Integer> ranked = new ArrayList<>();
+            String email = normalizeEmail(text);
+            if (email.contains("@")) {
+                addAll(ranked, seen, emails.get(hash(email)), limit);
+            }
+            String phone = normalizePhone(text);
+            if (phone.length() >= 6 && phone.length() * 2 >= term.replace(" ", "").length()) {
+                addAll(ranked, seen, phones.get(hash(phone)), limit);
+            }
+            int exact = ranked.size();
+            if (term.length() >= 3) {
+                addAll(ranked, seen, lookup(names, term), limit);
+                addAll(ranked, seen, lookup(addresses, term), limit);
+            }
+            int[] ids = new int[ranked.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = ranked.get(i);
+            }
+            return new Result(live(ids), exact);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether search() can answer a text: an email, a phone number or a
+     * text of at least three characters. Shorter names, such as "Li",
+     * have no trigram and must be searched in the database.
+     * @param text search text
+     * @return true if the index can search the text
+     */
+    public static boolean isSearchable(String text) {
+        String term = normalize(text);
+        String phone = normalizePhone(text);
+        return term.length() >= 3 || normalizeEmail(text).contains("@")
+                || (phone.length() >= 6 && phone.length() * 2 >= term.replace(" ", "").length());
+    }
+
+    /** Whether the index is loaded and search() can be used */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Number of indexed customers */
+    public int getIndexedCustomers() {
+        return indexedCustomers;
+    }
+
+    /**
+     * Returns the number of customers without counting the table on
+     * every call: once loaded, the index knows it; until then a COUNT
+     * is reused for a minute.
+     * @return the number of customers
+     */
+    public long getCustomerCount() {
+        if (ready) {
+            return indexedCustomers - removedCustomers;
+        }
+        long now = System.currentTimeMillis();
+        if (countedCustomers < 0 || now - countedAt > COUNT_TTL_MILLIS) {
+            countedCustomers = em.createQuery("SELECT COUNT(c) FROM Customer c", Long.class).getSingleResult();
+            countedAt = now;
+        }
+        return countedCustomers;
+    }
+
+    // --- Normalization, shared with the checks on loaded customers ---
+
+    /** Lower-cases and trims a name, address or search text */
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Normalized email: trimmed and lower-cased */
+    public static String normalizeEmail(String email) {
+        return normalize(email);
+    }
+
+    /** Normalized phone number: its digits only */
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Phonetic key of a customer: the Soundex codes of the words of the
+     * name in alphabetical order, so "Jon Smyth" and "Smith, John" get
+     * the same key, followed by the digits of the address (street
+     * number, postcode). The digits keep common names from putting
+     * thousands of unrelated customers under one key.
+     *
+     * @param name name of the customer
+     * @param address address of the customer
+     * @return the key, empty if the name has no letters
+     */
+    public static String phoneticName(String name, String address) {
+        List<String> codes = new ArrayList<>();
+        for (String word : normalize(name).split("[^a-z]+")) {
+            if (!word.isEmpty()) {
+                codes.add(soundex(word));
+            }
+        }
+        if (codes.isEmpty()) {
+            return "";
+        }
+        codes.sort(null);
+        return String.join(" ", codes) + '|' + normalizePhone(address);
+    }
+
+    /** American Soundex code of a lower-case word */
+    private static String soundex(String word) {
+        final String digits = "01230120022455012623010202";  // a..z
+        StringBuilder code = new StringBuilder(4).append(Character.toUpperCase(word.charAt(0)));
+        char previous = digits.charAt(word.charAt(0) - 'a');
+        for (int i = 1; i < word.length() && code.length() < 4; i++) {
+            char c = word.charAt(i);
+            char digit = digits.charAt(c - 'a');
+            if (digit != '0' && digit != previous) {
+                code.append(digit);
+            }
+            // h and w do not separate equal codes, vowels do
+            if (c != 'h' && c != 'w') {
+                previous = digit;
+            }
+        }
+        while (code.length() < 4) {
+            code.append('0');
+        }
+        return code.toString();
+    }
+
+    // --- Internals ---
+
+    private void load() {
+        long started = System.currentTimeMillis();
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Object[]> rows = em.createQuery(
+                        "SELECT c.id, c.name, c.address, c.email, c.phoneNumber FROM Customer c "
+                        + "WHERE c.id > :last ORDER BY c.id", Object[].class)
+                        .setParameter("last", lastId)
+                        .setMaxResults(LOAD_CHUNK)
+                        .getResultList();
+                if (rows.isEmpty()) {
+                    break;
+                }
+                lock.writeLock().lock();
+                try {
+                    for (Object[] row : rows) {
+                        addLocked(((Long) row[0]).intValue(), (String) row[1], (String) row[2],
+                                (String) row[3], (String) row[4]);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastId = (Long) rows.get(rows.size() - 1)[0];
+                em.clear();
+            }
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Could not load the customer index, searching the database instead", e);
+            synchronized (pending) {
+                loading = false;
+                pending.clear();
+                pendingUpdates.clear();
+                pendingRemovals.clear();
+            }
+            return;
+        }
+        synchronized (pending) {
+            lock.writeLock().lock();
+            try {
+                for (Customer c : pending) {
+                    addLocked(c.getId().intValue(), c.getName(), c.getAddress(), c.getEmail(), c.getPhoneNumber());
+                }
+                for (Customer c : pendingUpdates) {
+                    indexLocked(c.getId().intValue(), c.getName(), c.getAddress(), c.getEmail(),
+                            c.getPhoneNumber(), true);
+                }
+                for (Long id : pendingRemovals) {
+                    removeLocked(id.intValue());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            pending.clear();
+            pendingUpdates.clear();
+            pendingRemovals.clear();
+            loading = false;
+            ready = true;
+        }
+        LOG.log(Level.INFO, "Indexed {0} customers in {1} ms",
+                new Object[] {indexedCustomers, System.currentTimeMillis() - started});
+    }
+
+    private void addLocked(int id, String name, String address, String email, String phone) {
+        indexLocked(id, name, address, email, phone, false);
+        indexedCustomers++;
+    }
+
+    /**
+     * Puts a customer under the keys of its details.
+     * @param again true if the customer may already be indexed
+     */
+    private void indexLocked(int id, String name, String address, String email, String phone, boolean again) {
+        for (long trigram : trigrams(normalize(name))) {
+            names.computeIfAbsent(trigram, k -> new Postings()).insert(id);
+        }
+        for (long trigram : trigrams(normalize(address))) {
+            addresses.computeIfAbsent(trigram, k -> new Postings()).insert(id);
+        }
+        putKey(emails, normalizeEmail(email), id, again);
+        putKey(phones, normalizePhone(phone), id, again);
+        putKey(phoneticNames, phoneticName(name, address), id, again);
+    }
+
+    private static void putKey(HashTable table, String key, int id, boolean again) {
+        if (key.isEmpty()) {
+            return;
+        }
+        if (again) {
+            table.putIfAbsent(hash(key), id);
+        } else {
+            table.put(hash(key), id);
+        }
+    }
+
+    private void removeLocked(int id) {
+        if (!removed.get(id)) {
+            removed.set(id);
+            removedCustomers++;
+        }
+    }
+
+    /**
+     * Intersects the lists of all trigrams of the term, smallest first.
+     */
+    private static int[] lookup(Map<Long, Postings> field, String term) {
+        List<Postings> lists = new ArrayList<>();
+        for (long trigram : trigrams(term)) {
+            Postings p = field.get(trigram);
+            if (p == null) {
+                return new int[0];
+            }
+            lists.add(p);
+        }
+        lists.sort((a, b) -> Integer.compare(a.count, b.count));
+        int[] ids = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && ids.length > 0; i++) {
+            ids = lists.get(i).retain(ids);
+        }
+        return ids;
+    }
+
+    /** Drops removed customers from a list of ids; call under the lock */
+    private int[] live(int[] ids) {
+        if (removed.isEmpty()) {
+            return ids;
+        }
+        return Arrays.stream(ids).filter(id -> !removed.get(id)).toArray();
+    }
+
+    private static void addAll(List<Integer> ranked, Set<Integer> seen, int[] ids, int limit) {
+        for (int id : ids) {
+            if (ranked.size() >= limit) {
+                return;
+            }
+            if (seen.add(id)) {
+                ranked.add(id);
+            }
+        }
+    }
+
+    /** Distinct trigrams of a text, each packed into a long */
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /** 64-bit FNV-1a hash of a normalized key */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,500 @@
+package Customer.Beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.UserTransaction;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Recency/Frequency/Monetary segmentation of the customers.
+ *
+ * The job reads the orders table once with a forward-only cursor and
+ * sums, per customer, the date of the last order, the number of orders
+ * and their total, in an open-addressing map keyed by the int customer
+ * id. Each measure is then scored from 1 to 5 by quintile; the quintile
+ * boundaries come from parallel sorts of the measures, and the scores
+ * and segment labels are computed by a fork/join task over the map.
+ * The labels are written back to the customers table in JDBC batches of
+ * WRITE_BATCH rows, each batch in its own short transaction. The same
+ * batches clear the labels of the customers between consecutive scored
+ * ids, who have no orders left, e.g. after a merge, and would otherwise
+ * keep the labels of an earlier run.
+ *
+ * To keep order placement fast, the orders are read from the datasource
+ * named by ebussys.segmentation.dataSource, e.g. a read replica, and
+ * otherwise from the application's own datasource at no more than
+ * ebussys.segmentation.maxRowsPerSecond rows per second (0: no limit).
+ * Write batches are separated by ebussys.segmentation.pauseMillis.
+ * Customers without orders are not scored.
+ */
+@Named(value = "customerSegmentation")
+@ApplicationScoped
+public class CustomerSegmentationJob implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(CustomerSegmentationJob.class.getName());
+
+    /** Segment labels, in the order the rules in label() are tried */
+    public static final String CHAMPIONS = "Champions";
+    public static final String LOYAL = "Loyal";
+    public static final String NEW = "New";
+    public static final String AT_RISK = "At risk";
+    public static final String LOST = "Lost";
+    public static final String NEEDS_ATTENTION = "Needs attention";
+
+    private static final String[] SEGMENTS = {CHAMPIONS, LOYAL, NEW, AT_RISK, LOST, NEEDS_ATTENTION};
+
+    /** Rows fetched per round trip while reading the orders */
+    private static final int FETCH_SIZE = 1000;
+
+    /** Customers updated per write transaction */
+    private static final int WRITE_BATCH = 1000;
+
+    /** Customers per fork/join leaf task */
+    private static final int SCORE_CHUNK = 10_000;
+
+    private static final String SELECT_ORDERS =
+            "SELECT o.customer_id, o.ORDERDATE, o.QUANTITY * o.UNITPRICE FROM orders o";
+
+    private static final String UPDATE_SEGMENT =
+            "UPDATE customers SET SEGMENT = ?, RFMSCORE = ? WHERE ID = ?";
+
+    private static final String CLEAR_SEGMENT =
+            "UPDATE customers SET SEGMENT = NULL, RFMSCORE = NULL"
+            + " WHERE ID > ? AND ID < ? AND SEGMENT IS NOT NULL";
+
+    /** Per-customer measures, keyed by customer id */
+    private static final class CustomerTotals {
+        int[] keys = new int[1 << 16];
+        long[] lastOrder = new long[keys.length];
+        int[] orders = new int[keys.length];
+        double[] total = new double[keys.length];
+        int size;
+
+        void add(int customerId, long orderDate, double orderTotal) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int slot = slot(customerId);
+            if (keys[slot] == 0) {
+                keys[slot] = customerId;
+                size++;
+            }
+            lastOrder[slot] = Math.max(lastOrder[slot], orderDate);
+            orders[slot]++;
+            total[slot] += orderTotal;
+        }
+
+        private int slot(int customerId) {
+            int mask = keys.length - 1;
+            int slot = (customerId * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != 0 && keys[slot] != customerId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldLast = lastOrder;
+            int[] oldOrders = orders;
+            double[] oldTotal = total;
+            keys = new int[oldKeys.length * 2];
+            lastOrder = new long[keys.length];
+            orders = new int[keys.length];
+            total = new double[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    lastOrder[slot] = oldLast[i];
+                    orders[slot] = oldOrders[i];
+                    total[slot] = oldTotal[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Quintile boundaries of the three measures: the largest value of
+     * each of the lower four fifths. A customer scores one point more
+     * for each boundary its value exceeds, so ties, e.g. the many
+     * customers with a single order, share the lower score.
+     */
+    private static final class Quintiles {
+        final long[] recency = new long[4];
+        final int[] frequency = new int[4];
+        final double[] monetary = new double[4];
+    }
+
+    /** Scores and labels the customers in a range of map slots */
+    private static final class ScoreTask extends RecursiveAction {
+        private final CustomerTotals totals;
+        private final Quintiles q;
+        private final byte[] segments;
+        private final short[] scores;
+        private final int from;
+        private final int to;
+
+        ScoreTask(CustomerTotals totals, Quintiles q, byte[] segments, short[] scores, int from, int to) {
+            this.totals = totals;
+            this.q = q;
+            this.segments = segments;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SCORE_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreTask(totals, q, segments, scores, from, middle),
+                        new ScoreTask(totals, q, segments, scores, middle, to));
+                return;
+            }
+            for (int slot = from; slot < to; slot++) {
+                if (totals.keys[slot] == 0) {
+                    continue;
+                }
+                int r = 1;
+                int f = 1;
+                int m = 1;
+                for (int k = 0; k < 4; k++) {
+                    r += totals.lastOrder[slot] > q.recency[k] ? 1 : 0;
+                    f += totals.orders[slot] > q.frequency[k] ? 1 : 0;
+                    m += totals.total[slot] > q.monetary[k] ? 1 : 0;
+                }
+                scores[slot] = (short) (r * 100 + f * 10 + m);
+                segments[slot] = (byte) label(r, f, m);
+            }
+        }
+    }
+
+    /** EntityManager whose shared cache is cleared after writing */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for the write batches */
+    @Resource
+    private UserTransaction utx;
+
+    /** DataSource of the application, written to and read from without a replica */
+    @Resource(lookup = "java:app/jdbc/EBUSSYSDS")
+    private DataSource dataSource;
+
+    /** Container executor running the job */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Container threads for the fork/join pool */
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    /** JNDI name of the datasource the orders are read from, null for dataSource */
+    private String readDataSourceName;
+
+    private volatile long maxRowsPerSecond = 500_000;
+
+    private volatile long pauseMillis = 20;
+
+    // --- Status ---
+    private volatile boolean running;
+    private volatile long ordersRead;
+    private volatile long customersScored;
+    private volatile long customersWritten;
+    private volatile long lastRunMillis;
+    private volatile Map<String, Long> segmentCounts = Collections.emptyMap();
+
+    /**
+     * Reads the job settings.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        String name = context.getInitParameter("ebussys.segmentation.dataSource");
+        readDataSourceName = name == null || name.trim().isEmpty() ? null : name.trim();
+        String rate = context.getInitParameter("ebussys.segmentation.maxRowsPerSecond");
+        if (rate != null && !rate.trim().isEmpty()) {
+            maxRowsPerSecond = Long.parseLong(rate.trim());
+        }
+        String pause = context.getInitParameter("ebussys.segmentation.pauseMillis");
+        if (pause != null && !pause.trim().isEmpty()) {
+            pauseMillis = Long.parseLong(pause.trim());
+        }
+    }
+
+    /**
+     * Starts segmenting the customers in the background.
+     * @return false if the job is already running
+     */
+    public synchronized boolean start() {
+        if (running) {
+            return false;
+        }
+        running = true;
+        ordersRead = 0;
+        customersScored = 0;
+        customersWritten = 0;
+        executor.submit(this::run);
+        return true;
+    }
+
+    private void run() {
+        long started = System.currentTimeMillis();
+        ForkJoinPool pool = null;
+        try {
+            CustomerTotals totals = readOrders();
+
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), threadFactory, null, false);
+            Quintiles q = pool.submit(() -> quintiles(totals)).get();
+            byte[] segments = new byte[totals.keys.length];
+            short[] scores = new short[totals.keys.length];
+            pool.invoke(new ScoreTask(totals, q, segments, scores, 0, totals.keys.length));
+            customersScored = totals.size;
+
+            long[] counts = new long[SEGMENTS.length];
+            for (int slot = 0; slot < totals.keys.length; slot++) {
+                if (totals.keys[slot] != 0) {
+                    counts[segments[slot]]++;
+                }
+            }
+            Map<String, Long> byLabel = new LinkedHashMap<>();
+            for (int i = 0; i < SEGMENTS.length; i++) {
+                byLabel.put(SEGMENTS[i], counts[i]);
+            }
+            segmentCounts = Collections.unmodifiableMap(byLabel);
+
+            write(totals, segments, scores);
+            // The rows were changed behind JPA's back
+            em.getEntityManagerFactory().getCache().evict(Customer.class);
+            lastRunMillis = System.currentTimeMillis() - started;
+            LOG.log(Level.INFO, "Segmented {0} customers from {1} orders in {2} ms",
+                    new Object[] {customersScored, ordersRead, lastRunMillis});
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Customer segmentation failed", e);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            running = false;
+        }
+    }
+
+    /**
+     * Reads every order once and sums it up per customer.
+     */
+    private CustomerTotals readOrders() throws Exception {
+        DataSource source = dataSource;
+        long rowsPerSecond = maxRowsPerSecond;
+        if (readDataSourceName != null) {
+            source = lookup(readDataSourceName);
+            rowsPerSecond = 0;  // a replica needs no throttling
+        }
+        CustomerTotals totals = new CustomerTotals();
+        long started = System.nanoTime();
+        try (Connection con = source.getConnection();
+             PreparedStatement ps = con.prepareStatement(SELECT_ORDERS,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            con.setReadOnly(true);
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                long rows = 0;
+                while (rs.next()) {
+                    Timestamp orderDate = rs.getTimestamp(2);
+                    totals.add(rs.getInt(1), orderDate == null ? 0 : orderDate.getTime(), rs.getDouble(3));
+                    if (++rows % FETCH_SIZE == 0) {
+                        ordersRead = rows;
+                        throttle(rows, started, rowsPerSecond);
+                    }
+                }
+                ordersRead = rows;
+            }
+        }
+        return totals;
+    }
+
+    /** Sleeps while the rows were read faster than allowed */
+    private static void throttle(long rows, long startedNanos, long rowsPerSecond) throws InterruptedException {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long aheadMillis = rows * 1000 / rowsPerSecond - (System.nanoTime() - startedNanos) / 1_000_000;
+        if (aheadMillis > 0) {
+            Thread.sleep(aheadMillis);
+        }
+    }
+
+    /**
+     * Finds the quintile boundaries of the measures by sorting copies of
+     * them; Arrays.parallelSort() runs on the calling fork/join pool.
+     */
+    private static Quintiles quintiles(CustomerTotals totals) {
+        long[] recency = new long[totals.size];
+        int[] frequency = new int[totals.size];
+        double[] monetary = new double[totals.size];
+        int n = 0;
+        for (int slot = 0; slot < totals.keys.length; slot++) {
+            if (totals.keys[slot] != 0) {
+                recency[n] = totals.lastOrder[slot];
+                frequency[n] = totals.orders[slot];
+                monetary[n] = totals.total[slot];
+                n++;
+            }
+        }
+        Arrays.parallelSort(recency);
+        Arrays.parallelSort(frequency);
+        Arrays.parallelSort(monetary);
+        Quintiles q = new Quintiles();
+        for (int k = 0; k < 4; k++) {
+            int at = (int) ((long) n * (k + 1) / 5) - 1;
+            if (at >= 0) {
+                q.recency[k] = recency[at];
+                q.frequency[k] = frequency[at];
+                q.monetary[k] = monetary[at];
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Segment of a customer from its scores.
+     * @return index into SEGMENTS
+     */
+    static int label(int r, int f, int m) {
+        if (r >= 4 && f >= 4 && m >= 4) {
+            return 0;  // Champions
+        }
+        if (r >= 3 && f >= 3) {
+            return 1;  // Loyal
+        }
+        if (r >= 4) {
+            return 2;  // New: recent, few orders
+        }
+        if (r <= 2 && f >= 3) {
+            return 3;  // At risk: ordered often, not lately
+        }
+        if (r <= 2) {
+            return 4;  // Lost
+        }
+        return 5;  // Needs attention
+    }
+
+    /**
+     * Writes the labels in id order, WRITE_BATCH customers per transaction.
+     */
+    private void write(CustomerTotals totals, byte[] segments, short[] scores) throws Exception {
+        // Customer id << 32 | slot, sorted so each batch touches neighbouring rows
+        long[] order = new long[totals.size];
+        int n = 0;
+        for (int slot = 0; slot < totals.keys.length; slot++) {
+            if (totals.keys[slot] != 0) {
+                order[n++] = (long) totals.keys[slot] << 32 | slot;
+            }
+        }
+        Arrays.parallelSort(order);
+
+        // Last scored id written; the ids between two scored ids are cleared
+        long previous = 0;
+        // One pass even without scored customers, to clear every label
+        for (int from = 0; from == 0 || from < order.length; from += WRITE_BATCH) {
+            int to = Math.min(from + WRITE_BATCH, order.length);
+            try {
+                utx.begin();
+                try (Connection con = dataSource.getConnection();
+                     PreparedStatement ps = con.prepareStatement(UPDATE_SEGMENT);
+                     PreparedStatement clear = con.prepareStatement(CLEAR_SEGMENT)) {
+                    for (int i = from; i < to; i++) {
+                        int slot = (int) order[i];
+                        long id = totals.keys[slot];
+                        if (id > previous + 1) {
+                            clear.setLong(1, previous);
+                            clear.setLong(2, id);
+                            clear.addBatch();
+                        }
+                        ps.setString(1, SEGMENTS[segments[slot]]);
+                        ps.setString(2, Short.toString(scores[slot]));
+                        ps.setLong(3, id);
+                        ps.addBatch();
+                        previous = id;
+                    }
+                    if (to == order.length) {
+                        clear.setLong(1, previous);
+                        clear.setLong(2, Long.MAX_VALUE);
+                        clear.addBatch();
+                    }
+                    clear.executeBatch();
+                    ps.executeBatch();
+                }
+                utx.commit();
+            } catch (Exception e) {
+                try {
+                    if (utx.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                        utx.rollback();
+                    }
+                } catch (Exception ex) {
+                    // Log rollback error if needed
+                }
+                throw e;
+            }
+            customersWritten = to;
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    private static DataSource lookup(String name) throws NamingException {
+        return InitialContext.doLookup(name);
+    }
+
+    // --- Status getters ---
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getOrdersRead() {
+        return ordersRead;
+    }
+
+    public long getCustomersScored() {
+        return customersScored;
+    }
+
+    public long getCustomersWritten() {
+        return customersWritten;
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    /** Customers per segment after the last run, in SEGMENTS order */
+    public Map<String, Long> getSegmentCounts() {
+        return segmentCounts;
+    }
+}
@@ -3,14 +3,24 @@ package Order.Beans;
 import Customer.Beans.Customer;
 import jakarta.persistence.*;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Entity class representing an Order.
  * Maps to the "orders" table in the database.
+ * The indexes serve keyset pagination of the order list and the
+ * date, customer and product model criteria of the order search.
+ * The unique idempotency key makes a resubmitted order fail instead of
+ * being stored twice.
  */
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    @Index(name = "idx_orders_date_id", columnList = "orderDate, id"),
+    @Index(name = "idx_orders_customer_date", columnList = "customer_id, orderDate"),
+    @Index(name = "idx_orders_model", columnList = "productModel")
+})
 public class Order implements Serializable {
 
     /** Primary key of the order, auto-generated */
@@ -31,6 +41,13 @@ public class Order implements Serializable {
     @Temporal(TemporalType.TIMESTAMP)
     private Date orderDate;
 
+    /**
+     * Key sent with the order form, unique per submitted order.
+     * Null for orders placed without a key (imports, queued intake).
+     */
+    @Column(unique = true, length = 64)
+    private String idempotencyKey;
+
     /** 
      * The customer who placed the order.
      * Many orders can be linked to one customer.
@@ -40,6 +57,14 @@ public class Order implements Serializable {
     @JoinColumn(name = "customer_id", nullable = false)
     private Customer customer;
 
+    /**
+     * Lines of a multi-line order.
+     * Empty for single-product orders, which only use the fields above.
+     * CascadeType.ALL persists and removes lines together with the order.
+     */
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    private List<OrderLine> lines = new ArrayList<>();
+
     /** Default constructor initializing orderDate to current date/time */
     public Order() {
         this.orderDate = new Date();
@@ -87,6 +112,14 @@ public class Order implements Serializable {
         this.orderDate = orderDate;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
     public Customer getCustomer() {
         return customer;
     }
@@ -94,4 +127,37 @@ public class Order implements Serializable {
     public void setCustomer(Customer customer) {
         this.customer = customer;
     }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OrderLine> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Adds a line to this order and links it back to the order.
+     * @param line the line to add
+     */
+    public void addLine(OrderLine line) {
+        line.setOrder(this);
+        lines.add(line);
+    }
+
+    /**
+     * Returns the total price of the order.
+     * Sums the lines of a multi-line order, otherwise uses quantity * unitPrice.
+     * @return total order price
+     */
+    public double getTotalPrice() {
+        if (lines == null || lines.isEmpty()) {
+            return quantity * unitPrice;
+        }
+        double total = 0;
+        for (OrderLine line : lines) {
+            total += line.getLineTotal();
+        }
+        return total;
+    }
 }
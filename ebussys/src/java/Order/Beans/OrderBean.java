@@ -1,24 +1,25 @@
 package Order.Beans;
 
 import Customer.Beans.Customer;
-import jakarta.annotation.Resource;
 import jakarta.enterprise.context.SessionScoped;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import jakarta.transaction.UserTransaction;
 import jakarta.faces.application.FacesMessage;
 import jakarta.faces.context.FacesContext;
-import product.beans.Product;
+import jakarta.inject.Inject;
+import product.beans.ProductSummary;
+import product.beans.ProductCatalog;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Managed bean to handle order-related operations including
  * creating, deleting, searching orders and managing order data.
- * Uses manual transaction control for persistence operations.
+ * Persistence operations are delegated to OrderService.
  * SessionScoped to maintain state during user session.
  */
 @Named(value = "orderBean")
@@ -29,9 +30,13 @@ public class OrderBean implements Serializable {
     @PersistenceContext
     private EntityManager em;
 
-    /** UserTransaction to manually manage transactions */
-    @Resource
-    private UserTransaction utx;
+    /** Service that validates and persists orders */
+    @Inject
+    private OrderService orderService;
+
+    /** Optional asynchronous order intake queue */
+    @Inject
+    private OrderIntakeBean orderIntake;
 
     /** The current order object being created or edited */
     private Order currentOrder = new Order();
@@ -48,14 +53,34 @@ public class OrderBean implements Serializable {
     /** Cached list of all customers for selection */
     private List<Customer> customers;
 
-    /** Cached list of all products for selection */
-    private List<Product> products;
+    /** Shared product catalog used for selection */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** Search criteria: date range, customer, product model and total */
+    private OrderSearchCriteria searchCriteria = new OrderSearchCriteria();
+
+    /** Paginated results of the last multi-criteria search */
+    private OrderDataModel searchPage;
 
     /** List to hold results from order search */
     private List<Order> searchResults;
 
-    /** Cached list of all orders */
-    private List<Order> allOrders;
+    /** Keyset-paginated order list; holds only the current page */
+    private OrderDataModel orderPage = new OrderDataModel();
+
+    /** Token of the last order submitted through the intake queue */
+    private String intakeToken;
+
+    /** Lines collected for a multi-line (cart) order */
+    private List<OrderLine> cartLines = new ArrayList<>();
+
+    /**
+     * Idempotency key of the order form, sent back in a hidden field.
+     * A double-click or browser retry resubmits the same key, so the
+     * order is placed once; a new key is issued after each placed order.
+     */
+    private String orderKey = UUID.randomUUID().toString();
 
     // --- Getters and Setters ---
 
@@ -83,6 +108,14 @@ public class OrderBean implements Serializable {
         this.selectedProductId = selectedProductId;
     }
 
+    public String getOrderKey() {
+        return orderKey;
+    }
+
+    public void setOrderKey(String orderKey) {
+        this.orderKey = orderKey;
+    }
+
     public Integer getSearchOrderId() {
         return searchOrderId;
     }
@@ -91,6 +124,22 @@ public class OrderBean implements Serializable {
         this.searchOrderId = searchOrderId;
     }
 
+    public OrderSearchCriteria getSearchCriteria() {
+        return searchCriteria;
+    }
+
+    public void setSearchCriteria(OrderSearchCriteria searchCriteria) {
+        this.searchCriteria = searchCriteria;
+    }
+
+    /**
+     * Returns the paging state of the last multi-criteria search,
+     * or null if the last search was by order ID.
+     */
+    public OrderDataModel getSearchPage() {
+        return searchPage;
+    }
+
     /**
      * Returns the cached list of all customers.
      * Loads from DB if not loaded yet.
@@ -103,29 +152,54 @@ public class OrderBean implements Serializable {
     }
 
     /**
-     * Returns the cached list of all products.
-     * Loads from DB if not loaded yet.
+     * Returns summaries of all products from the shared product catalog,
+     * read from the PRODUCT table only.
      */
-    public List<Product> getProducts() {
-        if (products == null) {
-            products = em.createQuery("SELECT p FROM Product p", Product.class).getResultList();
-        }
-        return products;
+    public List<ProductSummary> getProducts() {
+        return catalog.getProducts();
     }
 
     /**
-     * Returns the cached list of all orders.
-     * Loads from DB if not loaded yet.
-     * Ensures an empty list if no orders found.
+     * Returns the paging state of the order list
+     * (page size, sort options, page number).
      */
-    public List<Order> getAllOrders() {
-        if (allOrders == null) {
-            allOrders = em.createQuery("SELECT o FROM Order o", Order.class).getResultList();
-            if (allOrders == null) {
-                allOrders = new ArrayList<>();
-            }
-        }
-        return allOrders;
+    public OrderDataModel getOrderPage() {
+        return orderPage;
+    }
+
+    /**
+     * Returns the orders on the current page of the order list.
+     * Loads the first page if no page is loaded yet.
+     */
+    public List<Order> getOrderRows() {
+        return orderPage.getRows(em);
+    }
+
+    /**
+     * Shows the next page of the order list.
+     * @return null to stay on the same page
+     */
+    public String nextOrderPage() {
+        orderPage.next(em);
+        return null;
+    }
+
+    /**
+     * Shows the previous page of the order list.
+     * @return null to stay on the same page
+     */
+    public String previousOrderPage() {
+        orderPage.previous(em);
+        return null;
+    }
+
+    /**
+     * Applies changed page size or sort options and shows the first page.
+     * @return null to stay on the same page
+     */
+    public String firstOrderPage() {
+        orderPage.first(em);
+        return null;
     }
 
     /**
@@ -135,11 +209,47 @@ public class OrderBean implements Serializable {
         return searchResults;
     }
 
+    /**
+     * Returns the token of the last order submitted through the intake queue.
+     */
+    public String getIntakeToken() {
+        return intakeToken;
+    }
+
+    /**
+     * Returns the status of the last order submitted through the intake queue.
+     */
+    public OrderIntakeBean.IntakeStatus getIntakeStatus() {
+        OrderIntakeBean.IntakeStatus status = orderIntake.getStatus(intakeToken);
+        if (status != null && status.getState() == OrderIntakeBean.State.PLACED) {
+            orderPage.reset();  // the new order should show up in the list
+        }
+        return status;
+    }
+
+    /**
+     * Returns the lines currently in the cart.
+     */
+    public List<OrderLine> getCartLines() {
+        return cartLines;
+    }
+
+    /**
+     * Returns the total price of the lines in the cart.
+     */
+    public double getCartTotal() {
+        double total = 0;
+        for (OrderLine line : cartLines) {
+            total += line.getLineTotal();
+        }
+        return total;
+    }
+
     // --- Business Logic ---
 
     /**
      * Deletes the specified order from the database.
-     * Uses manual transaction management.
+     * Delegates to OrderService, which also updates the customer's aggregates.
      * Refreshes cached order list after deletion.
      * Shows success or error message on UI.
      * 
@@ -148,23 +258,13 @@ public class OrderBean implements Serializable {
      */
     public String deleteOrder(Order order) {
         try {
-            utx.begin();
-            Order managedOrder = em.find(Order.class, order.getId());
-            if (managedOrder != null) {
-                em.remove(managedOrder);
-            }
-            utx.commit();
+            orderService.deleteOrder(order.getId());
 
-            allOrders = null; // reset cache to reload updated orders
+            orderPage.refresh(em);
 
             FacesContext.getCurrentInstance().addMessage(null,
                 new FacesMessage("Order deleted successfully for " + order.getCustomer().getName()));
         } catch (Exception e) {
-            try {
-                utx.rollback();
-            } catch (Exception ex) {
-                // Log rollback failure if needed
-            }
             FacesContext.getCurrentInstance().addMessage(null,
                 new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error deleting order", e.getMessage()));
         }
@@ -173,64 +273,137 @@ public class OrderBean implements Serializable {
 
     /**
      * Places a new order with the selected customer and product.
-     * Checks stock availability before committing.
-     * Deducts the ordered quantity from product stock.
-     * Manages transaction boundaries manually.
+     * Delegates to OrderService, which reserves stock with a single
+     * conditional update so concurrent orders cannot oversell a product.
+     * When asynchronous intake is enabled the order is queued instead.
      * Resets form and caches on success.
      * Shows success or error message.
      * 
      * @return navigation string for redirection or null on failure
      */
     public String placeOrder() {
+        if (orderIntake.isEnabled()) {
+            return submitOrder();
+        }
         try {
-            utx.begin();
+            Order order = orderService.placeOrder(orderKey, selectedCustomerId, selectedProductId, currentOrder.getQuantity());
 
-            Customer customer = em.find(Customer.class, selectedCustomerId);
-            Product product = em.find(Product.class, selectedProductId);
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage("Order placed successfully for product: " + order.getProductModel()));
 
-            if (customer == null || product == null) {
-                FacesContext.getCurrentInstance().addMessage(null,
-                    new FacesMessage(FacesMessage.SEVERITY_ERROR, "Invalid customer or product selection", null));
-                utx.rollback();
-                return null;
-            }
+            // Reset form and cached data
+            orderKey = UUID.randomUUID().toString();
+            currentOrder = new Order();
+            selectedCustomerId = null;
+            selectedProductId = null;
+            orderPage.reset();
 
-            int orderQty = currentOrder.getQuantity();
-            if (product.getStockNumber() < orderQty) {
-                FacesContext.getCurrentInstance().addMessage(null,
-                    new FacesMessage(FacesMessage.SEVERITY_ERROR, "Insufficient stock for product: " + product.getModel(), null));
-                utx.rollback();
-                return null;
-            }
+            return "listOrders.xhtml?faces-redirect=true";
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, e.getMessage(), null));
+            return null;
+        } catch (Exception e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error placing order", e.getMessage()));
+            return null;
+        }
+    }
 
-            // Deduct stock and update product entity
-            product.setStockNumber(product.getStockNumber() - orderQty);
-            em.merge(product);
+    /**
+     * Queues the order on the asynchronous intake and shows its status page.
+     * Used by placeOrder() when asynchronous intake is enabled.
+     *
+     * @return navigation string for the status page or null on failure
+     */
+    private String submitOrder() {
+        try {
+            intakeToken = orderIntake.submit(orderKey, selectedCustomerId, selectedProductId,
+                    currentOrder.getQuantity());
 
-            // Set order details
-            currentOrder.setCustomer(customer);
-            currentOrder.setProductModel(product.getModel());
-            currentOrder.setUnitPrice(product.getPrice());
+            // Reset form
+            orderKey = UUID.randomUUID().toString();
+            currentOrder = new Order();
+            selectedCustomerId = null;
+            selectedProductId = null;
 
-            em.persist(currentOrder);
-            utx.commit();
+            return "orderStatus.xhtml?faces-redirect=true";
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, e.getMessage(), null));
+            return null;
+        }
+    }
 
+    /**
+     * Adds the selected product and quantity to the cart.
+     * Model and price are shown from the product catalog;
+     * they are re-read from the database when the order is placed.
+     *
+     * @return null to stay on the same page
+     */
+    public String addToCart() {
+        ProductSummary product = selectedProductId == null ? null : catalog.getProduct(selectedProductId);
+        if (product == null || currentOrder.getQuantity() <= 0) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, "Select a product and a positive quantity", null));
+            return null;
+        }
+        if (cartLines.size() >= OrderService.MAX_LINES) {
             FacesContext.getCurrentInstance().addMessage(null,
-                new FacesMessage("Order placed successfully for product: " + product.getModel()));
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, "An order may have at most " + OrderService.MAX_LINES + " lines", null));
+            return null;
+        }
 
-            // Reset form and cached data
+        OrderLine line = new OrderLine(product.getId(), currentOrder.getQuantity());
+        line.setProductModel(product.getModel());
+        line.setUnitPrice(product.getPrice());
+        cartLines.add(line);
+
+        selectedProductId = null;
+        currentOrder.setQuantity(0);
+        return null;
+    }
+
+    /**
+     * Removes a line from the cart.
+     *
+     * @param line the cart line to remove
+     * @return null to stay on the same page
+     */
+    public String removeFromCart(OrderLine line) {
+        cartLines.remove(line);
+        return null;
+    }
+
+    /**
+     * Places all lines in the cart as one order for the selected customer.
+     * Stock is validated and deducted for every line in one transaction.
+     * Clears the cart and caches on success.
+     *
+     * @return navigation string for redirection or null on failure
+     */
+    public String placeCartOrder() {
+        try {
+            Order order = orderService.placeOrder(orderKey, selectedCustomerId, cartLines);
+
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage("Order placed successfully with " + order.getLines().size() + " lines"));
+
+            // Reset form, cart and cached data
+            orderKey = UUID.randomUUID().toString();
+            cartLines = new ArrayList<>();
             currentOrder = new Order();
             selectedCustomerId = null;
             selectedProductId = null;
-            allOrders = null;
+            orderPage.reset();
 
             return "listOrders.xhtml?faces-redirect=true";
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                new FacesMessage(FacesMessage.SEVERITY_ERROR, e.getMessage(), null));
+            return null;
         } catch (Exception e) {
-            try {
-                utx.rollback();
-            } catch (Exception ex) {
-                // Log rollback error if needed
-            }
             FacesContext.getCurrentInstance().addMessage(null,
                 new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error placing order", e.getMessage()));
             return null;
@@ -238,15 +411,28 @@ public class OrderBean implements Serializable {
     }
 
     /**
-     * Searches orders by their ID.
-     * If no ID is provided, clears the search results.
+     * Searches orders by their ID, or by the multi-criteria search
+     * fields when no ID is provided.
+     * The criteria search returns the first page of matching orders,
+     * newest first; further pages are read with keyset pagination.
+     * If no ID or criteria are provided, clears the search results.
      * Displays appropriate info message if no order found.
      * 
      * @return null to stay on current page
      */
     public String searchOrders() {
+        searchPage = null;
         if (searchOrderId == null) {
-            searchResults = null;
+            if (searchCriteria.isEmpty()) {
+                searchResults = null;
+            } else {
+                searchPage = new OrderDataModel(new OrderSearchCriteria(searchCriteria));
+                searchResults = searchPage.getRows(em);
+                if (searchResults.isEmpty()) {
+                    FacesContext.getCurrentInstance().addMessage(null,
+                        new FacesMessage(FacesMessage.SEVERITY_INFO, "No orders match the search criteria", null));
+                }
+            }
         } else {
             Order found = em.find(Order.class, searchOrderId);
             if (found != null) {
@@ -260,6 +446,30 @@ public class OrderBean implements Serializable {
         return null; // stay on current page
     }
 
+    /**
+     * Shows the next page of the search results.
+     * @return null to stay on the same page
+     */
+    public String nextSearchPage() {
+        if (searchPage != null) {
+            searchPage.next(em);
+            searchResults = searchPage.getRows(em);
+        }
+        return null;
+    }
+
+    /**
+     * Shows the previous page of the search results.
+     * @return null to stay on the same page
+     */
+    public String previousSearchPage() {
+        if (searchPage != null) {
+            searchPage.previous(em);
+            searchResults = searchPage.getRows(em);
+        }
+        return null;
+    }
+
     /**
      * Executes the searchOrders method and redirects to the
      * search results page.
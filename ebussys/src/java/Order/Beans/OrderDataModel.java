@@ -0,0 +1,270 @@
+package Order.Beans;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy, keyset (seek) paginated data model for the order list.
+ *
+ * Only the rows of the current page are kept in memory. Pages are read
+ * by seeking past the sort key of the first or last row on the current
+ * page (WHERE key &lt; :last ORDER BY key LIMIT n) instead of using an
+ * OFFSET, so every page costs the same index range scan no matter how
+ * deep the user pages or how large the orders table grows.
+ *
+ * Optional search criteria restrict the rows, so the same model also
+ * pages through order search results.
+ *
+ * The model does not hold an EntityManager; the owning bean passes its
+ * own in on every call.
+ */
+public class OrderDataModel implements Serializable {
+
+    /** Columns the order list can be sorted by */
+    public enum SortField { DATE, ID }
+
+    /** Page sizes offered in the UI */
+    private static final List<Integer> PAGE_SIZES = List.of(10, 20, 50, 100);
+
+    /** Number of rows per page */
+    private int pageSize = 20;
+
+    /** Sort column */
+    private SortField sortBy = SortField.DATE;
+
+    /** True for newest / highest id first */
+    private boolean descending = true;
+
+    /** Filter applied to every page, null for all orders */
+    private final OrderSearchCriteria criteria;
+
+    /** Rows of the current page, null until loaded */
+    private List<Order> rows;
+
+    /** 1-based number of the current page */
+    private int pageNumber = 1;
+
+    /** Whether a page exists after the current one */
+    private boolean hasNext;
+
+    /** Whether a page exists before the current one */
+    private boolean hasPrevious;
+
+    /** Creates a model over all orders */
+    public OrderDataModel() {
+        this(null);
+    }
+
+    /**
+     * Creates a model over the orders matching the given criteria.
+     * @param criteria filter applied to every page, or null for all orders
+     */
+    public OrderDataModel(OrderSearchCriteria criteria) {
+        this.criteria = criteria;
+    }
+
+    // --- Getters and Setters ---
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, Math.min(pageSize, 500));
+    }
+
+    public List<Integer> getPageSizes() {
+        return PAGE_SIZES;
+    }
+
+    public SortField getSortBy() {
+        return sortBy;
+    }
+
+    public void setSortBy(SortField sortBy) {
+        this.sortBy = sortBy == null ? SortField.DATE : sortBy;
+    }
+
+    public SortField[] getSortFields() {
+        return SortField.values();
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public boolean isHasPrevious() {
+        return hasPrevious;
+    }
+
+    // --- Paging ---
+
+    /**
+     * Returns the rows of the current page, loading the first page
+     * if nothing has been loaded yet.
+     *
+     * @param em EntityManager used for the query
+     * @return rows of the current page
+     */
+    public List<Order> getRows(EntityManager em) {
+        if (rows == null) {
+            first(em);
+        }
+        return rows;
+    }
+
+    /**
+     * Loads the first page.
+     * @param em EntityManager used for the query
+     */
+    public void first(EntityManager em) {
+        List<Order> page = fetch(em, null, true, false);
+        hasNext = trim(page, false);
+        hasPrevious = false;
+        pageNumber = 1;
+        rows = page;
+    }
+
+    /**
+     * Loads the page after the current one, if any.
+     * @param em EntityManager used for the query
+     */
+    public void next(EntityManager em) {
+        if (rows == null || rows.isEmpty() || !hasNext) {
+            return;
+        }
+        List<Order> page = fetch(em, rows.get(rows.size() - 1), true, false);
+        if (page.isEmpty()) {
+            hasNext = false;
+            return;
+        }
+        hasNext = trim(page, false);
+        hasPrevious = true;
+        pageNumber++;
+        rows = page;
+    }
+
+    /**
+     * Loads the page before the current one, if any.
+     * Falls back to the first page when no more than a full page precedes it.
+     * @param em EntityManager used for the query
+     */
+    public void previous(EntityManager em) {
+        if (rows == null || rows.isEmpty() || !hasPrevious) {
+            return;
+        }
+        List<Order> page = fetch(em, rows.get(0), false, false);
+        if (!trim(page, true)) {
+            first(em);
+            return;
+        }
+        Collections.reverse(page);
+        hasPrevious = true;
+        hasNext = true;
+        pageNumber = Math.max(1, pageNumber - 1);
+        rows = page;
+    }
+
+    /**
+     * Re-reads the current page starting at its first row,
+     * e.g. after an order on it was deleted.
+     * @param em EntityManager used for the query
+     */
+    public void refresh(EntityManager em) {
+        if (rows == null || rows.isEmpty() || pageNumber == 1) {
+            first(em);
+            return;
+        }
+        List<Order> page = fetch(em, rows.get(0), true, true);
+        if (page.isEmpty()) {
+            first(em);
+            return;
+        }
+        hasNext = trim(page, false);
+        rows = page;
+    }
+
+    /**
+     * Drops the current page so the next render reloads the first page.
+     */
+    public void reset() {
+        rows = null;
+    }
+
+    /**
+     * Cuts the look-ahead row off a fetched page.
+     *
+     * @param page fetched rows, at most pageSize + 1
+     * @param fromEnd true when the page was read backwards
+     * @return true if the look-ahead row was present
+     */
+    private boolean trim(List<Order> page, boolean fromEnd) {
+        if (page.size() <= pageSize) {
+            return false;
+        }
+        page.remove(fromEnd ? page.size() - 1 : pageSize);
+        return true;
+    }
+
+    /**
+     * Reads up to pageSize + 1 rows next to the given anchor row.
+     *
+     * @param em EntityManager used for the query
+     * @param anchor row to seek from, or null to start at the beginning
+     * @param forward true to read rows after the anchor, false for rows before it
+     * @param inclusive true to include the anchor row itself
+     * @return fetched rows in query order
+     */
+    private List<Order> fetch(EntityManager em, Order anchor, boolean forward, boolean inclusive) {
+        boolean desc = descending == forward;
+        String op = (desc ? "<" : ">") + (inclusive ? "=" : "");
+        String dir = desc ? " DESC" : " ASC";
+
+        StringBuilder jpql = new StringBuilder("SELECT o FROM Order o JOIN FETCH o.customer WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        if (criteria != null) {
+            criteria.appendConditions(jpql, params);
+        }
+        if (sortBy == SortField.DATE) {
+            if (anchor != null) {
+                jpql.append(" AND (o.orderDate ").append(desc ? "<" : ">").append(" :date")
+                    .append(" OR (o.orderDate = :date AND o.id ").append(op).append(" :id))");
+                params.put("date", anchor.getOrderDate());
+                params.put("id", anchor.getId());
+            }
+            jpql.append(" ORDER BY o.orderDate").append(dir).append(", o.id").append(dir);
+        } else {
+            if (anchor != null) {
+                jpql.append(" AND o.id ").append(op).append(" :id");
+                params.put("id", anchor.getId());
+            }
+            jpql.append(" ORDER BY o.id").append(dir);
+        }
+
+        TypedQuery<Order> query = em.createQuery(jpql.toString(), Order.class)
+                .setMaxResults(pageSize + 1);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            query.setParameter(param.getKey(), param.getValue());
+        }
+        return new ArrayList<>(query.getResultList());
+    }
+}
@@ -0,0 +1,126 @@
+package Order.Beans;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time-expiring cache of recently submitted idempotency keys
+ * and the orders they produced.
+ *
+ * The first submission of a key claims it and later completes it with
+ * the placed order. A duplicate submission finds the claimed key and
+ * waits for, or immediately gets, the original order without touching
+ * the database. A failed submission releases its key, so the user can
+ * correct the form and submit again.
+ *
+ * The cache is only the fast path: entries are evicted after TTL_MILLIS
+ * or when more than MAX_ENTRIES are held, and the unique constraint on
+ * Order.idempotencyKey catches duplicates the cache no longer knows.
+ */
+@ApplicationScoped
+public class OrderDedupCache implements Serializable {
+
+    /** Maximum number of keys held */
+    private static final int MAX_ENTRIES = 10_000;
+
+    /** Time a key is remembered, in milliseconds */
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+
+    /** A claimed key with its (pending) order */
+    private static class Entry {
+        final CompletableFuture<Order> order = new CompletableFuture<>();
+        final long expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+    }
+
+    /** Keys in claim order, so the oldest are evicted first */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** Number of duplicate submissions answered from the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Claims a key for a new submission.
+     *
+     * @param key idempotency key of the submission
+     * @return null if the caller now owns the key and must place the
+     *         order, otherwise the order of the earlier submission
+     */
+    public CompletableFuture<Order> claim(String key) {
+        synchronized (entries) {
+            evictExpired();
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                hits.incrementAndGet();
+                return existing.order;
+            }
+            entries.put(key, new Entry());
+            return null;
+        }
+    }
+
+    /**
+     * Records the order placed for a claimed key and releases any
+     * duplicate submissions waiting for it.
+     *
+     * @param key idempotency key of the submission
+     * @param order the committed order
+     */
+    public void complete(String key, Order order) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            entry.order.complete(order);
+        }
+    }
+
+    /**
+     * Releases a claimed key after the order failed.
+     * Waiting duplicates receive the same failure.
+     *
+     * @param key idempotency key of the submission
+     * @param failure reason the order was not placed
+     */
+    public void release(String key, Exception failure) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(key);
+        }
+        if (entry != null) {
+            entry.order.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Returns the number of duplicate submissions answered from the cache.
+     * @return cache hits since startup
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Removes expired keys from the old end; caller holds the lock */
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt > now) {
+                break;
+            }
+            it.remove();
+        }
+    }
+}
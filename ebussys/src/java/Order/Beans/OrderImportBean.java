@@ -0,0 +1,84 @@
+package Order.Beans;
+
+import jakarta.enterprise.context.SessionScoped;
+import jakarta.faces.application.FacesMessage;
+import jakarta.faces.context.FacesContext;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import product.beans.FeedReader;
+
+import java.io.Serializable;
+
+/**
+ * Backing bean of the bulk order import page.
+ * Starts an import of a file on the server and shows its progress.
+ */
+@Named(value = "orderImportBean")
+@SessionScoped
+public class OrderImportBean implements Serializable {
+
+    /** Path of the file to import on the server */
+    private String path;
+
+    /** Input format of the file */
+    private FeedReader.Format format = FeedReader.Format.CSV;
+
+    /** Orders written per batch */
+    private int batchSize = OrderImportService.DEFAULT_BATCH_SIZE;
+
+    /** Service performing the import */
+    @Inject
+    private OrderImportService orderImport;
+
+    /**
+     * Starts the import in the background.
+     * @return navigation outcome
+     */
+    public String startImport() {
+        try {
+            orderImport.startImport(path, format, batchSize);
+            FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage(FacesMessage.SEVERITY_INFO, "Import started", null));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage(FacesMessage.SEVERITY_ERROR, e.getMessage(), null));
+        }
+        return null;
+    }
+
+    /** Progress of the running or last import, null if none */
+    public OrderImportService.ImportResult getResult() {
+        return orderImport.getLastImport();
+    }
+
+    /** Formats offered on the page */
+    public FeedReader.Format[] getFormats() {
+        return FeedReader.Format.values();
+    }
+
+    // --- Getters and setters ---
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public FeedReader.Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(FeedReader.Format format) {
+        this.format = format;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
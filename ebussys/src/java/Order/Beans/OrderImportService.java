@@ -0,0 +1,462 @@
+package Order.Beans;
+
+import Customer.Beans.CustomerAggregateService;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.UserTransaction;
+import product.beans.FeedReader;
+import product.beans.StockReservationBean;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming bulk import of orders, e.g. for migrating a legacy system.
+ *
+ * The input is read one record at a time, either CSV with a header row
+ * or JSON Lines (one JSON object per line). Recognised fields:
+ * customerId or customerEmail, productId or productModel, quantity,
+ * and optionally unitPrice and orderDate (yyyy-MM-dd or
+ * yyyy-MM-dd'T'HH:mm:ss).
+ *
+ * Records are collected into batches of batchSize. Each batch runs in
+ * one transaction: stock is reserved once per product for the whole
+ * batch, the orders are written with a JDBC batch insert and the
+ * customer aggregates are updated once per customer. Customers and
+ * products are resolved through bounded LRU caches, so memory use does
+ * not depend on the size of the input.
+ */
+@Named(value = "orderImport")
+@ApplicationScoped
+public class OrderImportService implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(OrderImportService.class.getName());
+
+    /** Default number of orders per batch */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Maximum number of entries per resolution cache */
+    private static final int CACHE_SIZE = 10_000;
+
+    /** Maximum number of rejected rows kept for the report */
+    private static final int MAX_REJECTION_SAMPLES = 100;
+
+    private static final String INSERT_ORDER =
+            "INSERT INTO orders (PRODUCTMODEL, QUANTITY, UNITPRICE, ORDERDATE, customer_id) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Progress and outcome of an import.
+     * Counters are updated while the import runs.
+     */
+    public static class ImportResult implements Serializable {
+
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long finishedAt;
+        private volatile long rowsRead;
+        private volatile long imported;
+        private volatile long rejected;
+        private volatile String error;
+        private final List<String> rejections = Collections.synchronizedList(new ArrayList<>());
+
+        void reject(long lineNo, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_REJECTION_SAMPLES) {
+                rejections.add("Line " + lineNo + ": " + reason);
+            }
+        }
+
+        public boolean isRunning() {
+            return finishedAt == 0;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** First rejected rows with their reasons */
+        public List<String> getRejections() {
+            synchronized (rejections) {
+                return new ArrayList<>(rejections);
+            }
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /** Elapsed time in seconds, up to now while running */
+        public double getElapsedSeconds() {
+            long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+            return (end - startedAt) / 1000.0;
+        }
+
+        /** Rows read per second */
+        public double getRowsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : rowsRead / seconds;
+        }
+    }
+
+    /** A parsed and resolved input record */
+    private static class ImportRow {
+        long lineNo;
+        long customerId;
+        int productId;
+        String productModel;
+        int quantity;
+        double unitPrice;
+        Date orderDate;
+    }
+
+    /** Resolved product data kept in the cache */
+    private static class ProductRef {
+        final int id;
+        final String model;
+        final double price;
+
+        ProductRef(int id, String model, double price) {
+            this.id = id;
+            this.model = model;
+            this.price = price;
+        }
+    }
+
+    /** Bounded map evicting its least recently used entry */
+    private static class LruCache<K, V> extends LinkedHashMap<K, V> {
+        LruCache() {
+            super(256, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    }
+
+    /** Marker for keys known not to resolve */
+    private static final Object MISSING = new Object();
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for the batch transactions */
+    @Resource
+    private UserTransaction utx;
+
+    /** DataSource for the JDBC batch inserts; joins the JTA transaction */
+    @Resource(lookup = "java:app/jdbc/EBUSSYSDS")
+    private DataSource dataSource;
+
+    /** Container executor running background imports */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Service performing atomic stock reservations */
+    @Inject
+    private StockReservationBean stockReservation;
+
+    /** Maintains the per-customer order aggregates */
+    @Inject
+    private CustomerAggregateService customerAggregates;
+
+    /** The running or last background import */
+    private volatile ImportResult lastImport;
+
+    /**
+     * Returns the running or last background import.
+     * @return import progress, null if none was started
+     */
+    public ImportResult getLastImport() {
+        return lastImport;
+    }
+
+    /**
+     * Starts importing a file on the server in the background.
+     *
+     * @param path path of the file on the server
+     * @param format input format
+     * @param batchSize orders per batch
+     * @return progress of the started import
+     * @throws IllegalArgumentException if the file cannot be read
+     * @throws IllegalStateException if an import is already running
+     */
+    public synchronized ImportResult startImport(String path, FeedReader.Format format, int batchSize) {
+        if (lastImport != null && lastImport.isRunning()) {
+            throw new IllegalStateException("An import is already running");
+        }
+        Path file = Paths.get(path);
+        if (!Files.isReadable(file)) {
+            throw new IllegalArgumentException("Cannot read file: " + path);
+        }
+        ImportResult result = new ImportResult();
+        lastImport = result;
+        executor.submit(() -> {
+            try (InputStream in = Files.newInputStream(file)) {
+                importOrders(in, format, batchSize, result);
+            } catch (IOException e) {
+                result.error = e.getMessage();
+                result.finishedAt = System.currentTimeMillis();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Imports orders from a stream on the calling thread.
+     *
+     * @param in input, read to the end but not closed
+     * @param format input format
+     * @param batchSize orders per batch
+     * @return outcome of the import
+     */
+    public ImportResult importOrders(InputStream in, FeedReader.Format format, int batchSize) {
+        ImportResult result = new ImportResult();
+        importOrders(in, format, batchSize, result);
+        return result;
+    }
+
+    /**
+     * Reads, resolves and writes the records of the input batch by batch.
+     */
+    private void importOrders(InputStream in, FeedReader.Format format, int batchSize, ImportResult result) {
+        int size = batchSize <= 0 ? DEFAULT_BATCH_SIZE : batchSize;
+        Map<String, Object> customers = new LruCache<>();
+        Map<String, Object> products = new LruCache<>();
+        SimpleDateFormat dateTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd");
+
+        try {
+            FeedReader reader = new FeedReader(in, format);
+            List<ImportRow> batch = new ArrayList<>(size);
+            while (true) {
+                try {
+                    Map<String, String> fields = reader.next();
+                    if (fields == null) {
+                        break;
+                    }
+                    result.rowsRead++;
+                    batch.add(resolve(fields, reader.getLineNumber(), customers, products, dateTime, date));
+                } catch (IllegalArgumentException e) {
+                    result.rowsRead++;
+                    result.reject(reader.getLineNumber(), e.getMessage());
+                }
+                if (batch.size() >= size) {
+                    writeBatch(batch, result);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch, result);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Order import failed", e);
+            result.error = e.getMessage();
+        } finally {
+            result.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Turns the fields of one record into an import row, resolving the
+     * customer and product through the caches.
+     *
+     * @throws IllegalArgumentException if the record is invalid
+     */
+    private ImportRow resolve(Map<String, String> fields, long lineNo,
+            Map<String, Object> customers, Map<String, Object> products,
+            SimpleDateFormat dateTime, SimpleDateFormat date) {
+        ImportRow row = new ImportRow();
+        row.lineNo = lineNo;
+
+        String customerKey = fields.get("customerId") != null
+                ? "id:" + fields.get("customerId") : "email:" + fields.get("customerEmail");
+        Object customer = customers.computeIfAbsent(customerKey, k -> lookupCustomer(fields));
+        if (customer == MISSING) {
+            throw new IllegalArgumentException("Unknown customer " + customerKey);
+        }
+        row.customerId = (Long) customer;
+
+        String productKey = fields.get("productId") != null
+                ? "id:" + fields.get("productId") : "model:" + fields.get("productModel");
+        Object product = products.computeIfAbsent(productKey, k -> lookupProduct(fields));
+        if (product == MISSING) {
+            throw new IllegalArgumentException("Unknown product " + productKey);
+        }
+        ProductRef ref = (ProductRef) product;
+        row.productId = ref.id;
+        row.productModel = ref.model;
+
+        try {
+            row.quantity = Integer.parseInt(FeedReader.required(fields, "quantity"));
+            row.unitPrice = fields.get("unitPrice") != null
+                    ? Double.parseDouble(fields.get("unitPrice")) : ref.price;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+        if (row.quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        String orderDate = fields.get("orderDate");
+        try {
+            row.orderDate = orderDate == null ? new Date()
+                    : orderDate.contains("T") ? dateTime.parse(orderDate) : date.parse(orderDate);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid order date: " + orderDate);
+        }
+        return row;
+    }
+
+    private Object lookupCustomer(Map<String, String> fields) {
+        List<Long> ids;
+        if (fields.get("customerId") != null) {
+            ids = em.createQuery("SELECT c.id FROM Customer c WHERE c.id = :id", Long.class)
+                    .setParameter("id", Long.valueOf(fields.get("customerId")))
+                    .getResultList();
+        } else {
+            ids = em.createQuery("SELECT c.id FROM Customer c WHERE c.email = :email", Long.class)
+                    .setParameter("email", FeedReader.required(fields, "customerEmail"))
+                    .setMaxResults(1)
+                    .getResultList();
+        }
+        return ids.isEmpty() ? MISSING : ids.get(0);
+    }
+
+    private Object lookupProduct(Map<String, String> fields) {
+        List<Object[]> rows;
+        if (fields.get("productId") != null) {
+            rows = em.createQuery("SELECT p.id, p.model, p.price FROM Product p WHERE p.id = :id", Object[].class)
+                    .setParameter("id", Integer.valueOf(fields.get("productId")))
+                    .getResultList();
+        } else {
+            rows = em.createQuery("SELECT p.id, p.model, p.price FROM Product p WHERE p.model = :model", Object[].class)
+                    .setParameter("model", FeedReader.required(fields, "productModel"))
+                    .setMaxResults(1)
+                    .getResultList();
+        }
+        if (rows.isEmpty()) {
+            return MISSING;
+        }
+        Object[] r = rows.get(0);
+        return new ProductRef((Integer) r[0], (String) r[1], ((Number) r[2]).doubleValue());
+    }
+
+    /**
+     * Writes one batch in a single transaction.
+     * Stock is reserved once per product for all rows of the batch; if
+     * that fails, the product's rows are reserved one by one and the rows
+     * that do not fit are rejected.
+     */
+    private void writeBatch(List<ImportRow> batch, ImportResult result) {
+        try {
+            utx.begin();
+
+            Map<Integer, List<ImportRow>> byProduct = new TreeMap<>();
+            for (ImportRow row : batch) {
+                byProduct.computeIfAbsent(row.productId, k -> new ArrayList<>()).add(row);
+            }
+            List<ImportRow> accepted = new ArrayList<>(batch.size());
+            List<ImportRow> rejected = new ArrayList<>();
+            for (Map.Entry<Integer, List<ImportRow>> entry : byProduct.entrySet()) {
+                int total = 0;
+                for (ImportRow row : entry.getValue()) {
+                    total += row.quantity;
+                }
+                if (stockReservation.reserve(entry.getKey(), total)) {
+                    accepted.addAll(entry.getValue());
+                    continue;
+                }
+                for (ImportRow row : entry.getValue()) {
+                    if (stockReservation.reserve(row.productId, row.quantity)) {
+                        accepted.add(row);
+                    } else {
+                        rejected.add(row);
+                    }
+                }
+            }
+
+            try (Connection con = dataSource.getConnection();
+                 PreparedStatement ps = con.prepareStatement(INSERT_ORDER)) {
+                for (ImportRow row : accepted) {
+                    ps.setString(1, row.productModel);
+                    ps.setInt(2, row.quantity);
+                    ps.setDouble(3, row.unitPrice);
+                    ps.setTimestamp(4, new Timestamp(row.orderDate.getTime()));
+                    ps.setLong(5, row.customerId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            Map<Long, List<ImportRow>> byCustomer = new HashMap<>();
+            for (ImportRow row : accepted) {
+                byCustomer.computeIfAbsent(row.customerId, k -> new ArrayList<>()).add(row);
+            }
+            for (Map.Entry<Long, List<ImportRow>> entry : byCustomer.entrySet()) {
+                double total = 0;
+                Date last = null;
+                for (ImportRow row : entry.getValue()) {
+                    total += row.quantity * row.unitPrice;
+                    if (last == null || row.orderDate.after(last)) {
+                        last = row.orderDate;
+                    }
+                }
+                customerAggregates.recordOrders(entry.getKey(), entry.getValue().size(), total, last);
+            }
+
+            utx.commit();
+
+            result.imported += accepted.size();
+            for (ImportRow row : rejected) {
+                result.reject(row.lineNo, "Insufficient stock for product: " + row.productModel);
+            }
+        } catch (Exception e) {
+            try {
+                if (utx.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                    utx.rollback();
+                }
+            } catch (Exception ex) {
+                // Log rollback error if needed
+            }
+            LOG.log(Level.WARNING, "Order import batch failed", e);
+            for (ImportRow row : batch) {
+                result.reject(row.lineNo, "Batch failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package Order.Beans;
+
+import Customer.Beans.Customer;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.UserTransaction;
+import product.beans.ProductCatalog;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional asynchronous order intake with group commit.
+ *
+ * When enabled, placeOrder() only validates the request and puts it on a
+ * bounded in-memory queue, returning a token the user can poll. A writer
+ * task on the container's scheduled executor drains the queue and places
+ * up to batchSize orders in one transaction, so a burst of N orders costs
+ * about N / batchSize commits and pool connections instead of N.
+ *
+ * When the queue is full, submit() refuses the order instead of blocking
+ * the request thread (backpressure); the caller reports "busy" to the user.
+ *
+ * Orders carry the idempotency key of the order form, which is stored on
+ * the order as on the synchronous path. A resubmission of a form whose
+ * order is queued or placed gets the status of that order back; one the
+ * intake has forgotten fails the unique key in its batch and is resolved
+ * to the original order when the batch is retried order by order.
+ *
+ * Configured with context parameters in web.xml:
+ * ebussys.orderIntake.enabled, ebussys.orderIntake.queueCapacity,
+ * ebussys.orderIntake.batchSize.
+ */
+@Named(value = "orderIntakeBean")
+@ApplicationScoped
+public class OrderIntakeBean implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(OrderIntakeBean.class.getName());
+
+    /** How long the status of a finished order can be polled */
+    private static final long STATUS_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** Delay between two drains of the queue */
+    private static final long DRAIN_INTERVAL_MILLIS = 50;
+
+    /** States an accepted order goes through */
+    public enum State { QUEUED, PLACED, REJECTED, FAILED }
+
+    /**
+     * Status of an order submitted through the intake queue.
+     */
+    public static class IntakeStatus implements Serializable {
+
+        private final String token;
+        private volatile State state = State.QUEUED;
+        private volatile Integer orderId;
+        private volatile String message;
+        private volatile long updated = System.currentTimeMillis();
+
+        IntakeStatus(String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public Integer getOrderId() {
+            return orderId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        void finish(State state, Integer orderId, String message) {
+            this.orderId = orderId;
+            this.message = message;
+            this.updated = System.currentTimeMillis();
+            this.state = state;
+        }
+    }
+
+    /** An order waiting in the queue */
+    private static class PendingOrder {
+        final IntakeStatus status;
+        final String orderKey;
+        final Long customerId;
+        final Integer productId;
+        final int quantity;
+
+        PendingOrder(IntakeStatus status, String orderKey, Long customerId, Integer productId, int quantity) {
+            this.status = status;
+            this.orderKey = orderKey;
+            this.customerId = customerId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction to manually manage transactions */
+    @Resource
+    private UserTransaction utx;
+
+    /** Container executor running the writer task */
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    /** Service that validates and persists orders */
+    @Inject
+    private OrderService orderService;
+
+    /** Product catalog used to validate submitted products without a query */
+    @Inject
+    private ProductCatalog productCatalog;
+
+    private volatile boolean enabled;
+    private int batchSize = 20;
+    private BlockingQueue<PendingOrder> queue = new ArrayBlockingQueue<>(1000);
+    private final Map<String, IntakeStatus> statuses = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> writer;
+
+    // --- Metrics ---
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong refusedCount = new AtomicLong();
+    private final AtomicLong placedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchedOrders = new AtomicLong();
+    private final AtomicLong batchNanos = new AtomicLong();
+
+    /**
+     * Reads the configuration and starts the writer when the application starts.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        enabled = Boolean.parseBoolean(context.getInitParameter("ebussys.orderIntake.enabled"));
+        String capacity = context.getInitParameter("ebussys.orderIntake.queueCapacity");
+        if (capacity != null) {
+            queue = new ArrayBlockingQueue<>(Integer.parseInt(capacity.trim()));
+        }
+        String size = context.getInitParameter("ebussys.orderIntake.batchSize");
+        if (size != null) {
+            batchSize = Math.max(1, Integer.parseInt(size.trim()));
+        }
+        if (enabled) {
+            writer = executor.scheduleWithFixedDelay(this::drain,
+                    DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the writer and places whatever is still queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (writer != null) {
+            writer.cancel(false);
+            drain();
+        }
+    }
+
+    /**
+     * Returns whether orders are placed through the intake queue.
+     * @return true if asynchronous intake is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validates an order and queues it for placement.
+     *
+     * @param orderKey idempotency key of the submission, null to place unconditionally
+     * @param customerId id of the ordering customer
+     * @param productId id of the ordered product
+     * @param quantity quantity ordered
+     * @return token to poll the order status with
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws IllegalStateException if the queue is full
+     */
+    public String submit(String orderKey, Long customerId, Integer productId, int quantity) {
+        if (customerId == null || productId == null
+                || em.find(Customer.class, customerId) == null
+                || productCatalog.getProduct(productId) == null) {
+            throw new IllegalArgumentException("Invalid customer or product selection");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        String key = orderKey == null || orderKey.isEmpty() ? null : orderKey;
+        IntakeStatus status = new IntakeStatus(key != null ? key : UUID.randomUUID().toString());
+        IntakeStatus earlier = statuses.putIfAbsent(status.getToken(), status);
+        if (earlier != null) {
+            // A resubmitted form: report its order, unless that one did not go through
+            if ((earlier.getState() != State.REJECTED && earlier.getState() != State.FAILED)
+                    || !statuses.replace(status.getToken(), earlier, status)) {
+                return earlier.getToken();
+            }
+        }
+        if (!queue.offer(new PendingOrder(status, key, customerId, productId, quantity))) {
+            statuses.remove(status.getToken(), status);
+            refusedCount.incrementAndGet();
+            throw new IllegalStateException("The shop is busy, please try again in a moment");
+        }
+        acceptedCount.incrementAndGet();
+        return status.getToken();
+    }
+
+    /**
+     * Returns the status of an order submitted through the queue.
+     * @param token token returned by submit()
+     * @return the status, or null if the token is unknown or expired
+     */
+    public IntakeStatus getStatus(String token) {
+        return token == null ? null : statuses.get(token);
+    }
+
+    /**
+     * Places everything currently queued, batchSize orders per transaction.
+     */
+    private void drain() {
+        try {
+            List<PendingOrder> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                placeBatch(batch);
+                batch.clear();
+            }
+            pruneStatuses();
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the scheduled writer
+            LOG.log(Level.SEVERE, "Order intake writer failed", e);
+        }
+    }
+
+    /**
+     * Places a batch of orders in one transaction.
+     * Orders rejected for business reasons do not write anything and are
+     * skipped. If the transaction itself fails, each order of the batch is
+     * retried in its own transaction so one bad order cannot sink the rest.
+     *
+     * @param batch orders to place
+     */
+    private void placeBatch(List<PendingOrder> batch) {
+        long start = System.nanoTime();
+        List<Order> placed = new ArrayList<>(batch.size());
+        List<String> rejections = new ArrayList<>(batch.size());
+        try {
+            utx.begin();
+            for (PendingOrder pending : batch) {
+                try {
+                    placed.add(orderService.createOrder(pending.customerId, pending.productId, pending.quantity,
+                            pending.orderKey));
+                    rejections.add(null);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    placed.add(null);
+                    rejections.add(e.getMessage());
+                }
+            }
+            utx.commit();
+        } catch (Exception e) {
+            rollbackQuietly();
+            LOG.log(Level.WARNING, "Group commit failed, placing orders one by one", e);
+            placeOneByOne(batch);
+            return;
+        }
+        batchCount.incrementAndGet();
+        batchedOrders.addAndGet(batch.size());
+        batchNanos.addAndGet(System.nanoTime() - start);
+
+        // Publish results only after the commit succeeded
+        Iterator<Order> orders = placed.iterator();
+        Iterator<String> reasons = rejections.iterator();
+        for (PendingOrder pending : batch) {
+            Order order = orders.next();
+            String reason = reasons.next();
+            if (order != null) {
+                placedCount.incrementAndGet();
+                pending.status.finish(State.PLACED, order.getId(), "Order placed for product: " + order.getProductModel());
+            } else {
+                rejectedCount.incrementAndGet();
+                pending.status.finish(State.REJECTED, null, reason);
+            }
+        }
+    }
+
+    /**
+     * Fallback for a failed batch: places each order in its own transaction.
+     * @param batch orders to place
+     */
+    private void placeOneByOne(List<PendingOrder> batch) {
+        for (PendingOrder pending : batch) {
+            try {
+                Order order = orderService.placeOrder(pending.orderKey, pending.customerId, pending.productId,
+                        pending.quantity);
+                placedCount.incrementAndGet();
+                pending.status.finish(State.PLACED, order.getId(), "Order placed for product: " + order.getProductModel());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                rejectedCount.incrementAndGet();
+                pending.status.finish(State.REJECTED, null, e.getMessage());
+            } catch (Exception e) {
+                rejectedCount.incrementAndGet();
+                pending.status.finish(State.FAILED, null, "Error placing order: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Forgets finished orders whose status has been kept long enough.
+     */
+    private void pruneStatuses() {
+        long cutoff = System.currentTimeMillis() - STATUS_RETENTION_MILLIS;
+        statuses.values().removeIf(s -> s.state != State.QUEUED && s.updated < cutoff);
+    }
+
+    /**
+     * Rolls back the current transaction if one is active.
+     */
+    private void rollbackQuietly() {
+        try {
+            if (utx.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                utx.rollback();
+            }
+        } catch (Exception ex) {
+            // Log rollback error if needed
+        }
+    }
+
+    // --- Metrics getters ---
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /** Orders refused at submit time because the queue was full */
+    public long getRefusedCount() {
+        return refusedCount.get();
+    }
+
+    public long getPlacedCount() {
+        return placedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the average number of orders per group commit.
+     * @return average batch size, 0 if no batch committed
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0 : (double) batchedOrders.get() / batches;
+    }
+
+    /**
+     * Returns the average transaction time per order of a group commit,
+     * comparable with OrderService.getAverageMillisPerOrder().
+     * @return average milliseconds per order, 0 if none placed
+     */
+    public double getAverageMillisPerOrder() {
+        long count = batchedOrders.get();
+        return count == 0 ? 0 : batchNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Returns the synchronous order service, so its metrics can be shown
+     * next to the intake metrics.
+     * @return the order service
+     */
+    public OrderService getSyncService() {
+        return orderService;
+    }
+}
@@ -0,0 +1,116 @@
+package Order.Beans;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Entity class representing a single line of a multi-line Order.
+ * Maps to the "order_lines" table in the database.
+ *
+ * Ids come from a table generator with a large allocation size instead of
+ * IDENTITY, so the persistence provider can write the lines of an order
+ * with JDBC batch inserts.
+ */
+@Entity
+@Table(name = "order_lines", indexes = {
+    @Index(name = "idx_order_lines_order_model", columnList = "order_id, productModel")
+})
+public class OrderLine implements Serializable {
+
+    /** Primary key of the order line, pre-allocated in blocks */
+    @Id
+    @TableGenerator(name = "orderLineGen", table = "id_generators",
+            pkColumnName = "gen_name", valueColumnName = "gen_value",
+            pkColumnValue = "order_lines", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orderLineGen")
+    private long id;
+
+    /**
+     * The order this line belongs to.
+     * Foreign key column: order_id
+     */
+    @ManyToOne
+    @JoinColumn(name = "order_id", nullable = false)
+    private Order order;
+
+    /** Id of the product ordered */
+    private int productId;
+
+    /** Model name of the product ordered */
+    private String productModel;
+
+    /** Quantity of the product ordered */
+    private int quantity;
+
+    /** Unit price of the product at the time of ordering */
+    private double unitPrice;
+
+    /** Default constructor */
+    public OrderLine() {}
+
+    /**
+     * Creates a line for the given product and quantity.
+     * Model and price are filled in when the order is placed.
+     *
+     * @param productId id of the product ordered
+     * @param quantity quantity ordered
+     */
+    public OrderLine(int productId, int quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    // === Getters and Setters ===
+
+    public long getId() {
+        return id;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public String getProductModel() {
+        return productModel;
+    }
+
+    public void setProductModel(String productModel) {
+        this.productModel = productModel;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    /**
+     * Returns the total price of this line.
+     * @return quantity multiplied by unit price
+     */
+    public double getLineTotal() {
+        return quantity * unitPrice;
+    }
+}
@@ -0,0 +1,167 @@
+package Order.Beans;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Filter criteria for the multi-criteria order search.
+ * Every criterion is optional; the ones that are set are combined with AND.
+ *
+ * The date range, customer and product model criteria are served by
+ * indexes on the orders table (see Order); the product model of the
+ * lines of multi-line orders by the index on order_lines (see
+ * OrderLine). The total range is applied on top of those as a residual
+ * filter.
+ */
+public class OrderSearchCriteria implements Serializable {
+
+    /** Earliest order date (inclusive) */
+    private Date fromDate;
+
+    /** Latest order date (inclusive, whole day) */
+    private Date toDate;
+
+    /** Id of the ordering customer */
+    private Long customerId;
+
+    /** Product model, matched as a prefix of the order's or one of its lines' model */
+    private String productModel;
+
+    /** Minimum order total (quantity * unitPrice) */
+    private Double minTotal;
+
+    /** Maximum order total (quantity * unitPrice) */
+    private Double maxTotal;
+
+    /** Default constructor */
+    public OrderSearchCriteria() {}
+
+    /**
+     * Copy constructor, used to freeze the criteria of a running search.
+     * @param other criteria to copy
+     */
+    public OrderSearchCriteria(OrderSearchCriteria other) {
+        this.fromDate = other.fromDate;
+        this.toDate = other.toDate;
+        this.customerId = other.customerId;
+        this.productModel = other.productModel;
+        this.minTotal = other.minTotal;
+        this.maxTotal = other.maxTotal;
+    }
+
+    // === Getters and Setters ===
+
+    public Date getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(Date fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    public Date getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(Date toDate) {
+        this.toDate = toDate;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getProductModel() {
+        return productModel;
+    }
+
+    public void setProductModel(String productModel) {
+        this.productModel = productModel;
+    }
+
+    public Double getMinTotal() {
+        return minTotal;
+    }
+
+    public void setMinTotal(Double minTotal) {
+        this.minTotal = minTotal;
+    }
+
+    public Double getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(Double maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * Returns true if no criterion is set.
+     * @return whether the criteria are empty
+     */
+    public boolean isEmpty() {
+        return fromDate == null && toDate == null && customerId == null
+                && (productModel == null || productModel.trim().isEmpty())
+                && minTotal == null && maxTotal == null;
+    }
+
+    /**
+     * Appends the JPQL conditions for the set criteria to a query on
+     * the alias "o" and records their parameter values.
+     * Each condition is preceded by " AND ".
+     *
+     * @param jpql query being built
+     * @param params parameter values, keyed by name
+     */
+    public void appendConditions(StringBuilder jpql, Map<String, Object> params) {
+        if (fromDate != null) {
+            jpql.append(" AND o.orderDate >= :fromDate");
+            params.put("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            // Include the whole last day
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(toDate);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            jpql.append(" AND o.orderDate < :toDate");
+            params.put("toDate", cal.getTime());
+        }
+        if (customerId != null) {
+            jpql.append(" AND o.customer.id = :customerId");
+            params.put("customerId", customerId);
+        }
+        if (productModel != null && !productModel.trim().isEmpty()) {
+            // Prefix match so the productModel indexes can be used
+            jpql.append(" AND (o.productModel LIKE :productModel ESCAPE '!'")
+                .append(" OR EXISTS (SELECT l FROM OrderLine l WHERE l.order = o")
+                .append(" AND l.productModel LIKE :productModel ESCAPE '!'))");
+            params.put("productModel", escapeLike(productModel.trim()) + "%");
+        }
+        if (minTotal != null) {
+            jpql.append(" AND o.quantity * o.unitPrice >= :minTotal");
+            params.put("minTotal", minTotal);
+        }
+        if (maxTotal != null) {
+            jpql.append(" AND o.quantity * o.unitPrice <= :maxTotal");
+            params.put("maxTotal", maxTotal);
+        }
+    }
+
+    /**
+     * Escapes the LIKE wildcards of user input, so they match literally.
+     * The escape character is '!' rather than a backslash, which MySQL
+     * would also treat as an escape inside the SQL string literal.
+     *
+     * @param text user input
+     * @return the text with '!', '%' and '_' escaped by '!'
+     */
+    static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
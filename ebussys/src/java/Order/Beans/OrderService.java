@@ -0,0 +1,406 @@
+package Order.Beans;
+
+import Customer.Beans.Customer;
+import Customer.Beans.CustomerAggregateService;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.UserTransaction;
+import product.beans.ProductSummary;
+import product.beans.StockReservationBean;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-wide service that places orders.
+ * Validates the request, reserves stock, persists the order and
+ * updates the customer's order aggregates in one short transaction.
+ *
+ * Business failures (unknown customer or product, insufficient stock)
+ * are reported with IllegalArgumentException / IllegalStateException
+ * whose message is suitable for display; the transaction is rolled back
+ * before the exception leaves the service.
+ *
+ * Orders placed with an idempotency key are placed at most once per key:
+ * a duplicate submission returns the original order, from the
+ * OrderDedupCache while it remembers the key and otherwise after the
+ * unique constraint on the key rejected the second insert.
+ */
+@ApplicationScoped
+public class OrderService implements Serializable {
+
+    /** Upper bound on the number of lines accepted in one order */
+    public static final int MAX_LINES = 500;
+
+    /** Time a duplicate submission waits for the original to finish */
+    private static final long DUPLICATE_WAIT_SECONDS = 30;
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction to manually manage transactions */
+    @Resource
+    private UserTransaction utx;
+
+    /** Service performing atomic stock reservations */
+    @Inject
+    private StockReservationBean stockReservation;
+
+    /** Maintains the per-customer order aggregates */
+    @Inject
+    private CustomerAggregateService customerAggregates;
+
+    /** Recently submitted idempotency keys and their orders */
+    @Inject
+    private OrderDedupCache dedupCache;
+
+    /** Number of orders placed synchronously */
+    private final AtomicLong placedCount = new AtomicLong();
+
+    /** Total time spent placing orders synchronously, in nanoseconds */
+    private final AtomicLong placedNanos = new AtomicLong();
+
+    /**
+     * Returns the number of orders placed synchronously since startup.
+     * @return placed order count
+     */
+    public long getPlacedCount() {
+        return placedCount.get();
+    }
+
+    /**
+     * Returns the average time one synchronous order held a transaction.
+     * @return average milliseconds per order, 0 if none placed
+     */
+    public double getAverageMillisPerOrder() {
+        long count = placedCount.get();
+        return count == 0 ? 0 : placedNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Places a single-product order in its own transaction.
+     *
+     * @param customerId id of the ordering customer
+     * @param productId id of the ordered product
+     * @param quantity quantity ordered
+     * @return the persisted order
+     * @throws Exception if the order could not be placed
+     */
+    public Order placeOrder(Long customerId, Integer productId, int quantity) throws Exception {
+        return placeOrder(null, customerId, productId, quantity);
+    }
+
+    /**
+     * Places a single-product order in its own transaction, at most once
+     * per idempotency key.
+     *
+     * @param idempotencyKey key of the submission, null to place unconditionally
+     * @param customerId id of the ordering customer
+     * @param productId id of the ordered product
+     * @param quantity quantity ordered
+     * @return the persisted order, or the original order of a duplicate submission
+     * @throws Exception if the order could not be placed
+     */
+    public Order placeOrder(String idempotencyKey, Long customerId, Integer productId, int quantity)
+            throws Exception {
+        return placeOnce(idempotencyKey, () -> {
+            long start = System.nanoTime();
+            try {
+                utx.begin();
+                Order order = createOrder(customerId, productId, quantity, idempotencyKey);
+                utx.commit();
+                placedCount.incrementAndGet();
+                placedNanos.addAndGet(System.nanoTime() - start);
+                return order;
+            } catch (Exception e) {
+                rollbackQuietly();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Reserves stock for and persists a single-product order inside the
+     * caller's active transaction.
+     * Nothing is written when the method throws, so the caller may carry
+     * on with the same transaction after a rejected order.
+     *
+     * @param customerId id of the ordering customer
+     * @param productId id of the ordered product
+     * @param quantity quantity ordered
+     * @param idempotencyKey key of the submission stored on the order, may be null
+     * @return the persisted (not yet committed) order
+     * @throws IllegalArgumentException if the quantity is not positive or the
+     *         customer or product does not exist
+     * @throws IllegalStateException if there is not enough stock
+     */
+    Order createOrder(Long customerId, Integer productId, int quantity, String idempotencyKey) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Customer customer = customerId == null ? null : em.find(Customer.class, customerId);
+        ProductSummary product = productId == null ? null : findProduct(productId);
+        if (customer == null || product == null) {
+            throw new IllegalArgumentException("Invalid customer or product selection");
+        }
+
+        // Check and deduct stock in one statement; the row stays locked only until commit
+        if (!stockReservation.reserve(product.getId(), quantity)) {
+            throw new IllegalStateException("Insufficient stock for product: " + product.getModel());
+        }
+
+        Order order = new Order();
+        order.setCustomer(customer);
+        order.setProductModel(product.getModel());
+        order.setQuantity(quantity);
+        order.setUnitPrice(product.getPrice());
+        order.setIdempotencyKey(idempotencyKey);
+
+        em.persist(order);
+        customerAggregates.recordOrder(customer.getId(), order.getTotalPrice(), order.getOrderDate());
+        return order;
+    }
+
+    /**
+     * Places a multi-line order in a single transaction.
+     * Quantities for the same product are merged, stock for every product
+     * is reserved in ascending id order (so concurrent carts cannot
+     * deadlock each other) and the lines are written as one JDBC batch.
+     * If any product lacks stock, nothing is written.
+     *
+     * @param customerId id of the ordering customer
+     * @param requested requested lines; only productId and quantity are used
+     * @return the persisted order header with its lines
+     * @throws Exception if the order could not be placed
+     */
+    public Order placeOrder(Long customerId, List<OrderLine> requested) throws Exception {
+        return placeOrder(null, customerId, requested);
+    }
+
+    /**
+     * Places a multi-line order in a single transaction, at most once
+     * per idempotency key.
+     *
+     * @param idempotencyKey key of the submission, null to place unconditionally
+     * @param customerId id of the ordering customer
+     * @param requested requested lines; only productId and quantity are used
+     * @return the persisted order header with its lines, or the original
+     *         order of a duplicate submission
+     * @throws Exception if the order could not be placed
+     */
+    public Order placeOrder(String idempotencyKey, Long customerId, List<OrderLine> requested)
+            throws Exception {
+        return placeOnce(idempotencyKey, () -> placeCart(idempotencyKey, customerId, requested));
+    }
+
+    /**
+     * Validates, reserves and persists a multi-line order.
+     */
+    private Order placeCart(String idempotencyKey, Long customerId, List<OrderLine> requested)
+            throws Exception {
+        if (requested == null || requested.isEmpty()) {
+            throw new IllegalArgumentException("The order has no lines");
+        }
+        if (requested.size() > MAX_LINES) {
+            throw new IllegalArgumentException("An order may have at most " + MAX_LINES + " lines");
+        }
+
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (OrderLine line : requested) {
+            if (line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for every line");
+            }
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+
+        long start = System.nanoTime();
+        try {
+            utx.begin();
+
+            Customer customer = customerId == null ? null : em.find(Customer.class, customerId);
+            if (customer == null) {
+                throw new IllegalArgumentException("Invalid customer selection");
+            }
+
+            // Load every product of the order with one query
+            Map<Integer, ProductSummary> products = new HashMap<>();
+            for (ProductSummary p : em.createQuery(ProductSummary.SELECT + " WHERE p.id IN :ids", ProductSummary.class)
+                    .setParameter("ids", quantities.keySet())
+                    .getResultList()) {
+                products.put(p.getId(), p);
+            }
+            if (products.size() != quantities.size()) {
+                throw new IllegalArgumentException("Invalid product selection");
+            }
+
+            Order order = new Order();
+            order.setCustomer(customer);
+            order.setIdempotencyKey(idempotencyKey);
+            int totalQty = 0;
+            double total = 0;
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                ProductSummary product = products.get(entry.getKey());
+                int qty = entry.getValue();
+                if (qty <= 0) {
+                    // Lines of one product whose quantities overflow when merged
+                    throw new IllegalArgumentException("Quantity must be positive for product: " + product.getModel());
+                }
+                if (!stockReservation.reserve(product.getId(), qty)) {
+                    throw new IllegalStateException("Insufficient stock for product: " + product.getModel());
+                }
+                OrderLine line = new OrderLine(product.getId(), qty);
+                line.setProductModel(product.getModel());
+                line.setUnitPrice(product.getPrice());
+                order.addLine(line);
+                totalQty += qty;
+                total += line.getLineTotal();
+            }
+
+            // Header summary keeps quantity * unitPrice equal to the order total
+            OrderLine first = order.getLines().get(0);
+            int more = order.getLines().size() - 1;
+            order.setProductModel(more == 0 ? first.getProductModel()
+                    : first.getProductModel() + " (+" + more + " more)");
+            order.setQuantity(totalQty);
+            order.setUnitPrice(total / totalQty);
+
+            em.persist(order);  // cascades to the lines, written as a JDBC batch
+            customerAggregates.recordOrder(customer.getId(), total, order.getOrderDate());
+            utx.commit();
+            placedCount.incrementAndGet();
+            placedNanos.addAndGet(System.nanoTime() - start);
+            return order;
+        } catch (Exception e) {
+            rollbackQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes an order and removes it from the customer's aggregates
+     * in one transaction.
+     *
+     * @param orderId id of the order to delete
+     * @return the deleted order, or null if it did not exist
+     * @throws Exception if the order could not be deleted
+     */
+    public Order deleteOrder(int orderId) throws Exception {
+        try {
+            utx.begin();
+            Order order = em.find(Order.class, orderId);
+            if (order != null) {
+                double total = order.getTotalPrice();
+                em.remove(order);
+                em.flush();  // so the customer's last order date is recomputed without it
+                customerAggregates.removeOrder(order.getCustomer().getId(), total);
+            }
+            utx.commit();
+            return order;
+        } catch (Exception e) {
+            rollbackQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the PRODUCT columns of a product, without its subtype table.
+     *
+     * @param productId id of the product
+     * @return the product's summary, or null if it does not exist
+     */
+    private ProductSummary findProduct(Integer productId) {
+        List<ProductSummary> found = em.createQuery(ProductSummary.SELECT + " WHERE p.id = :id", ProductSummary.class)
+                .setParameter("id", productId)
+                .getResultList();
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Runs a placement at most once per idempotency key.
+     * A duplicate of a submission that is still running waits for it and
+     * returns (or throws) the same result. When the cache has forgotten
+     * the key, the unique constraint fails the second insert and the
+     * original order is read back instead.
+     *
+     * @param idempotencyKey key of the submission, null or empty to just run the placement
+     * @param placement places the order in its own transaction
+     * @return the placed or the original order
+     * @throws Exception if the order could not be placed
+     */
+    private Order placeOnce(String idempotencyKey, Callable<Order> placement) throws Exception {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return placement.call();
+        }
+
+        CompletableFuture<Order> earlier = dedupCache.claim(idempotencyKey);
+        if (earlier != null) {
+            try {
+                return earlier.get(DUPLICATE_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("The order is still being processed, please check the order list");
+            }
+        }
+
+        try {
+            Order order = placement.call();
+            dedupCache.complete(idempotencyKey, order);
+            return order;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            dedupCache.release(idempotencyKey, e);
+            throw e;
+        } catch (Exception e) {
+            // Most likely the unique key: the order was placed by an earlier submission
+            Order original = findByIdempotencyKey(idempotencyKey);
+            if (original != null) {
+                dedupCache.complete(idempotencyKey, original);
+                return original;
+            }
+            dedupCache.release(idempotencyKey, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up the order placed with an idempotency key.
+     *
+     * @param idempotencyKey key of the submission
+     * @return the order with its lines, or null if none was placed
+     */
+    private Order findByIdempotencyKey(String idempotencyKey) {
+        List<Order> orders = em.createQuery(
+                "SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.lines WHERE o.idempotencyKey = :key",
+                Order.class)
+                .setParameter("key", idempotencyKey)
+                .getResultList();
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    /**
+     * Rolls back the current transaction if one is active.
+     */
+    private void rollbackQuietly() {
+        try {
+            if (utx.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                utx.rollback();
+            }
+        } catch (Exception ex) {
+            // Log rollback error if needed
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package Order.Servlets;
+
+import jakarta.annotation.Resource;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams all orders as CSV or JSON Lines.
+ *
+ * GET /export/orders?format=csv|jsonl, optionally with from and to
+ * (yyyy-MM-dd, both inclusive) to limit the order dates.
+ *
+ * A multi-line order is exported as one row per OrderLine, each with
+ * the order's id, date and customer and the line's product, quantity
+ * and unit price. Single-line orders without OrderLine rows are
+ * exported from the order itself.
+ *
+ * The orders are read with a forward-only, read-only cursor at a fixed
+ * fetch size and each row is written straight to the response, so no
+ * entities are created and heap use does not grow with the number of
+ * orders. The response is flushed after every fetch, so the client
+ * receives data while the export is still running. Registered in web.xml.
+ */
+public class OrderExportServlet extends HttpServlet {
+
+    private static final Logger LOG = Logger.getLogger(OrderExportServlet.class.getName());
+
+    /** Rows fetched from the database per round trip */
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SELECT_ORDERS =
+            "SELECT o.ID, o.ORDERDATE, o.customer_id, c.NAME, c.EMAIL, "
+            + "COALESCE(l.PRODUCTMODEL, o.PRODUCTMODEL), COALESCE(l.QUANTITY, o.QUANTITY), "
+            + "COALESCE(l.UNITPRICE, o.UNITPRICE) "
+            + "FROM orders o JOIN customers c ON c.ID = o.customer_id "
+            + "LEFT JOIN order_lines l ON l.order_id = o.ID";
+
+    /** DataSource of the application; needs useCursorFetch=true on MySQL */
+    @Resource(lookup = "java:app/jdbc/EBUSSYSDS")
+    private DataSource dataSource;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        boolean json = "jsonl".equalsIgnoreCase(req.getParameter("format"));
+        SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd");
+        day.setLenient(false);
+        Timestamp from;
+        Timestamp to;
+        try {
+            from = req.getParameter("from") == null ? null
+                    : new Timestamp(day.parse(req.getParameter("from")).getTime());
+            // Inclusive: everything before the start of the following day
+            to = req.getParameter("to") == null ? null
+                    : new Timestamp(day.parse(req.getParameter("to")).getTime() + 24L * 60 * 60 * 1000);
+        } catch (ParseException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Dates must be yyyy-MM-dd");
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_ORDERS).append(" WHERE 1 = 1");
+        if (from != null) {
+            sql.append(" AND o.ORDERDATE >= ?");
+        }
+        if (to != null) {
+            sql.append(" AND o.ORDERDATE < ?");
+        }
+        sql.append(" ORDER BY o.ID, l.ID");
+
+        resp.setContentType(json ? "application/x-ndjson" : "text/csv");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Content-Disposition",
+                "attachment; filename=\"orders." + (json ? "jsonl" : "csv") + "\"");
+
+        SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        Writer out = new BufferedWriter(new OutputStreamWriter(resp.getOutputStream(), StandardCharsets.UTF_8));
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            int param = 1;
+            if (from != null) {
+                ps.setTimestamp(param++, from);
+            }
+            if (to != null) {
+                ps.setTimestamp(param, to);
+            }
+
+            if (!json) {
+                out.write("id,orderDate,customerId,customerName,customerEmail,productModel,quantity,unitPrice\n");
+            }
+            out.flush();
+
+            try (ResultSet rs = ps.executeQuery()) {
+                long rows = 0;
+                while (rs.next()) {
+                    Timestamp orderDate = rs.getTimestamp(2);
+                    String date = orderDate == null ? "" : timestamp.format(orderDate);
+                    if (json) {
+                        JsonObjectBuilder row = Json.createObjectBuilder()
+                                .add("id", rs.getInt(1))
+                                .add("orderDate", date)
+                                .add("customerId", rs.getLong(3))
+                                .add("customerName", nullToEmpty(rs.getString(4)))
+                                .add("customerEmail", nullToEmpty(rs.getString(5)))
+                                .add("productModel", nullToEmpty(rs.getString(6)))
+                                .add("quantity", rs.getInt(7))
+                                .add("unitPrice", rs.getDouble(8));
+                        out.write(row.build().toString());
+                    } else {
+                        out.write(Integer.toString(rs.getInt(1)));
+                        out.write(',');
+                        out.write(date);
+                        out.write(',');
+                        out.write(Long.toString(rs.getLong(3)));
+                        out.write(',');
+                        out.write(csv(rs.getString(4)));
+                        out.write(',');
+                        out.write(csv(rs.getString(5)));
+                        out.write(',');
+                        out.write(csv(rs.getString(6)));
+                        out.write(',');
+                        out.write(Integer.toString(rs.getInt(7)));
+                        out.write(',');
+                        out.write(Double.toString(rs.getDouble(8)));
+                    }
+                    out.write('\n');
+                    if (++rows % FETCH_SIZE == 0) {
+                        out.flush();
+                    }
+                }
+            }
+            out.flush();
+        } catch (SQLException e) {
+            // Headers are usually committed already; the client sees a truncated file
+            LOG.log(Level.SEVERE, "Order export failed", e);
+            if (!resp.isCommitted()) {
+                resp.reset();
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Export failed");
+            }
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Quotes a CSV value if it contains a separator, quote or line break.
+     */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -46,7 +46,7 @@ public class LoginFilter implements Filter {
         //Retrieve the authtication bean
        //AutenticationBean session = (AutenticationBean) req.getSession(true).getAttribute("authBean");
        //Any after login accessible pages should be listed here
-       String[] afterLog = {"logout.xhtml", "dashboard.xhtml", "createLaptop.xhtml", "stockLaptops.xhtml","searchLaptop.xhtml","searchOrders.xhtml","stockPhones.xhtml","searchPhone.xhtml","searchLaptop.xhtml","searchCustomer.xhtml","productDetails.xhtml","listOrders.xhtml","listCustomers.xhtml","foundPhones.xhtml","foundOrders.xhtml","foundLaptops.xhtml","foundCustomers.xhtml","customerDetails.xhtml","createPhone.xhtml","createOrder.xhtml","createCustomer.xhtml"};
+       String[] afterLog = {"logout.xhtml", "dashboard.xhtml", "createLaptop.xhtml", "stockLaptops.xhtml","searchLaptop.xhtml","searchOrders.xhtml","stockPhones.xhtml","searchPhone.xhtml","searchLaptop.xhtml","searchCustomer.xhtml","productDetails.xhtml","listOrders.xhtml","listCustomers.xhtml","foundPhones.xhtml","foundOrders.xhtml","foundLaptops.xhtml","foundCustomers.xhtml","customerDetails.xhtml","createPhone.xhtml","createOrder.xhtml","createCustomer.xhtml","orderStatus.xhtml","importOrders.xhtml","/import/orders","/export/orders","importProducts.xhtml","/import/products","/suggest/products","customerDuplicates.xhtml"};
        String url=req.getRequestURI();
        if (session==null || !session.isLogged()) {
            boolean risk=false;
@@ -0,0 +1,51 @@
+package product.beans;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Named;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the current low-stock alerts for the panel on the dashboard.
+ */
+@Named(value = "lowStockPanel")
+@ApplicationScoped
+public class DashboardLowStockSink implements LowStockSink {
+
+    /** Current alerts by product id */
+    private final Map<Integer, LowStockAlert> alerts = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "dashboard";
+    }
+
+    @Override
+    public void raised(LowStockAlert alert) {
+        alerts.put(alert.getProductId(), alert);
+    }
+
+    @Override
+    public void updated(LowStockAlert alert) {
+        alerts.put(alert.getProductId(), alert);
+    }
+
+    @Override
+    public void cleared(LowStockAlert alert) {
+        alerts.remove(alert.getProductId());
+    }
+
+    /**
+     * Returns the current alerts, lowest stock first.
+     * @return current low-stock alerts
+     */
+    public List<LowStockAlert> getAlerts() {
+        List<LowStockAlert> list = new ArrayList<>(alerts.values());
+        list.sort(Comparator.comparingInt(LowStockAlert::getStock));
+        return list;
+    }
+}
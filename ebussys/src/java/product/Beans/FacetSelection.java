@@ -0,0 +1,71 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The facet values a user has selected on a stock page.
+ * Values of one facet are alternatives; different facets all apply.
+ */
+public class FacetSelection implements Serializable {
+
+    /** Facet that is always applied, e.g. TYPE = Laptop on the laptop page */
+    private final ProductFacetIndex.Facet fixedFacet;
+    private final String fixedValue;
+
+    /** Selected values per facet */
+    private final Map<ProductFacetIndex.Facet, Set<String>> selected =
+            new EnumMap<>(ProductFacetIndex.Facet.class);
+
+    /**
+     * Creates a selection that always filters by one facet value.
+     * @param fixedFacet facet applied on top of the user's selection
+     * @param fixedValue value of that facet
+     */
+    public FacetSelection(ProductFacetIndex.Facet fixedFacet, String fixedValue) {
+        this.fixedFacet = fixedFacet;
+        this.fixedValue = fixedValue;
+        clear();
+    }
+
+    /**
+     * Selects a facet value, or deselects it if it was selected.
+     * @param facet facet name
+     * @param value facet value
+     */
+    public void toggle(ProductFacetIndex.Facet facet, String value) {
+        if (facet == fixedFacet) {
+            return;
+        }
+        Set<String> values = selected.computeIfAbsent(facet, k -> new TreeSet<>());
+        if (!values.remove(value)) {
+            values.add(value);
+        }
+    }
+
+    /** Removes all selected values except the fixed one */
+    public final void clear() {
+        selected.clear();
+        Set<String> fixed = new TreeSet<>();
+        fixed.add(fixedValue);
+        selected.put(fixedFacet, fixed);
+    }
+
+    /** Whether any value besides the fixed one is selected */
+    public boolean isActive() {
+        for (Map.Entry<ProductFacetIndex.Facet, Set<String>> entry : selected.entrySet()) {
+            if (entry.getKey() != fixedFacet && !entry.getValue().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Selected values per facet, including the fixed one */
+    public Map<ProductFacetIndex.Facet, Set<String>> getSelected() {
+        return selected;
+    }
+}
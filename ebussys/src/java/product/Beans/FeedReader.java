@@ -0,0 +1,162 @@
+package product.beans;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records of a CSV or JSON Lines feed one at a time, so a feed
+ * of any size is processed in constant memory.
+ *
+ * CSV input needs a header row naming the fields; JSON Lines input holds
+ * one JSON object per line. Each record is returned as a map from field
+ * name to value; empty values and JSON nulls are left out. Blank lines
+ * are skipped.
+ *
+ * Used by the order and product imports.
+ */
+public class FeedReader {
+
+    /** Supported input formats */
+    public enum Format { CSV, JSONL }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private String[] header;
+    private long lineNo;
+
+    /**
+     * @param in input, read as UTF-8; not closed by this reader
+     * @param format input format
+     */
+    public FeedReader(InputStream in, Format format) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.format = format;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the fields of the record, null at the end of the input
+     * @throws IllegalArgumentException if the record cannot be parsed;
+     *         the record is consumed, so reading can go on
+     * @throws IOException if the input cannot be read
+     */
+    public Map<String, String> next() throws IOException {
+        if (format == Format.CSV && header == null) {
+            String first = reader.readLine();
+            if (first == null) {
+                return null;
+            }
+            lineNo++;
+            header = parseCsvLine(first);
+            for (int i = 0; i < header.length; i++) {
+                header[i] = header[i].trim();
+            }
+        }
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNo++;
+        } while (line.trim().isEmpty());
+        return format == Format.CSV ? csvFields(line) : jsonFields(line);
+    }
+
+    /**
+     * @return line number of the record returned last, starting at 1
+     */
+    public long getLineNumber() {
+        return lineNo;
+    }
+
+    /**
+     * Returns a field that must be present.
+     * @throws IllegalArgumentException if the field is missing or empty
+     */
+    public static String required(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private Map<String, String> csvFields(String line) {
+        String[] values = parseCsvLine(line);
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.length; i++) {
+            String value = values[i].trim();
+            if (!value.isEmpty()) {
+                fields.put(header[i], value);
+            }
+        }
+        return fields;
+    }
+
+    private static Map<String, String> jsonFields(String line) {
+        JsonObject object;
+        try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            object = reader.readObject();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getMessage());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, JsonValue> entry : object.entrySet()) {
+            JsonValue value = entry.getValue();
+            if (value.getValueType() == JsonValue.ValueType.STRING) {
+                fields.put(entry.getKey(), object.getString(entry.getKey()));
+            } else if (value.getValueType() != JsonValue.ValueType.NULL) {
+                fields.put(entry.getKey(), value.toString());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Splits one CSV line into its values.
+     * Supports double-quoted values with "" as an escaped quote;
+     * a record may not span several lines.
+     */
+    private static String[] parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        values.add(current.toString());
+        return values.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,70 @@
+package product.beans;
+
+import java.io.Serializable;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Journal entry for a stock change made through the hot stock ledger.
+ *
+ * Each reservation of a hot product inserts one row in the same
+ * transaction as the order, instead of updating the contended PRODUCT
+ * row. The ledger later sums the rows per product, applies the net
+ * change to Product.stockNumber in one update and deletes them.
+ * Rows left behind by a crash are applied on the next startup.
+ *
+ * Mapped to the "HOT_STOCK_DELTA" table in the database.
+ */
+@Entity
+@Table(name = "HOT_STOCK_DELTA")
+public class HotStockDelta implements Serializable {
+
+    /** Primary key, auto-generated ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Id of the product whose stock changed */
+    private int productId;
+
+    /** Number of items taken from stock; negative when stock was returned */
+    private int quantity;
+
+    /** Default constructor */
+    public HotStockDelta() {}
+
+    /**
+     * Creates a journal entry.
+     * @param productId id of the product whose stock changed
+     * @param quantity number of items taken from stock
+     */
+    public HotStockDelta(int productId, int quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    // === Getters and Setters === //
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
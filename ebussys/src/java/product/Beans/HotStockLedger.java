@@ -0,0 +1,402 @@
+package product.beans;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.UserTransaction;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory, striped stock ledger for designated hot products.
+ *
+ * Popular products turn their PRODUCT row into a lock hotspot because
+ * every order updates the same stockNumber. For products listed in the
+ * ebussys.hotStock.productIds context parameter, the available stock is
+ * instead held in memory, split over several stripes that are updated
+ * with compare-and-set, so concurrent orders rarely touch the same
+ * memory word and never wait on a row lock.
+ *
+ * Correctness:
+ * - A stripe is only decremented when it holds enough stock, so the
+ *   ledger can never hand out more than it was loaded with (no oversell).
+ * - Each reservation journals a HotStockDelta row in the order's own
+ *   transaction; if that transaction rolls back, the stock is put back.
+ * - A scheduled task sums the committed journal rows per product and
+ *   applies the net change to Product.stockNumber in one update.
+ * - On startup, journal rows left by a crash are applied before the
+ *   ledger loads the stock, so a restart recovers the exact state.
+ *
+ * The ledger assumes a single application server instance. Stock of a
+ * hot product must not be changed directly in the database while the
+ * application runs; PRODUCT.stockNumber of a hot product lags by up to
+ * one reconcile interval, use getAvailable() for the live value.
+ */
+@Named(value = "hotStockLedger")
+@ApplicationScoped
+public class HotStockLedger implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(HotStockLedger.class.getName());
+
+    /** Maximum journal rows applied per reconcile transaction */
+    private static final int RECONCILE_LIMIT = 5000;
+
+    /**
+     * Striped stock counter of one product.
+     * Stripes are spaced PAD slots apart so they sit on different cache lines.
+     */
+    static final class StripedCounter {
+
+        private static final int PAD = 16;
+
+        private final int stripes;
+        private final AtomicIntegerArray cells;
+
+        StripedCounter(int stripes, int stock) {
+            this.stripes = stripes;
+            this.cells = new AtomicIntegerArray(stripes * PAD);
+            for (int i = 0; i < stripes; i++) {
+                cells.set(i * PAD, stock / stripes + (i < stock % stripes ? 1 : 0));
+            }
+        }
+
+        /** Stripe used by the calling thread */
+        private int home() {
+            return (Thread.currentThread().hashCode() & 0x7fffffff) % stripes;
+        }
+
+        /** Total stock over all stripes */
+        int available() {
+            int sum = 0;
+            for (int i = 0; i < stripes; i++) {
+                sum += cells.get(i * PAD);
+            }
+            return sum;
+        }
+
+        /**
+         * Takes qty items if available.
+         * Tries to take them from a single stripe first, starting at the
+         * thread's home stripe; if no stripe holds enough on its own,
+         * gathers them from several stripes.
+         */
+        boolean take(int qty) {
+            int start = home();
+            for (int i = 0; i < stripes; i++) {
+                int idx = ((start + i) % stripes) * PAD;
+                int v;
+                while ((v = cells.get(idx)) >= qty) {
+                    if (cells.compareAndSet(idx, v, v - qty)) {
+                        return true;
+                    }
+                }
+            }
+            return gather(qty);
+        }
+
+        /** Takes qty items spread over several stripes, or nothing */
+        private synchronized boolean gather(int qty) {
+            int[] taken = new int[stripes];
+            int remaining = qty;
+            for (int i = 0; i < stripes && remaining > 0; i++) {
+                int idx = i * PAD;
+                int v;
+                while ((v = cells.get(idx)) > 0) {
+                    int t = Math.min(v, remaining);
+                    if (cells.compareAndSet(idx, v, v - t)) {
+                        taken[i] = t;
+                        remaining -= t;
+                        break;
+                    }
+                }
+            }
+            if (remaining == 0) {
+                return true;
+            }
+            // Not enough stock in total: give back what was taken
+            for (int i = 0; i < stripes; i++) {
+                if (taken[i] > 0) {
+                    cells.addAndGet(i * PAD, taken[i]);
+                }
+            }
+            return false;
+        }
+
+        /** Returns qty items to the thread's home stripe */
+        void put(int qty) {
+            cells.addAndGet(home() * PAD, qty);
+        }
+    }
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for the reconcile transactions */
+    @Resource
+    private UserTransaction utx;
+
+    /** Registry used to undo in-memory changes of rolled back transactions */
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    /** Container executor running the reconcile task */
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    /** Stock counters of the hot products, keyed by product id */
+    private final Map<Integer, StripedCounter> counters = new ConcurrentHashMap<>();
+
+    private ScheduledFuture<?> reconciler;
+
+    // --- Metrics ---
+    private final AtomicLong reservedCount = new AtomicLong();
+    private final AtomicLong refusedCount = new AtomicLong();
+    private final AtomicLong reconciledRows = new AtomicLong();
+
+    /**
+     * Applies journal rows left from a previous run, loads the stock of
+     * the configured hot products and starts the reconcile task.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        // Recovery: bring PRODUCT.stockNumber up to date before loading it,
+        // even if no product is hot any more
+        try {
+            while (reconcile() == RECONCILE_LIMIT) {
+                // keep going until the journal is empty
+            }
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Could not apply hot stock journal, hot stock ledger disabled", e);
+            return;
+        }
+
+        String ids = context.getInitParameter("ebussys.hotStock.productIds");
+        if (ids == null || ids.trim().isEmpty()) {
+            return;
+        }
+        String seconds = context.getInitParameter("ebussys.hotStock.reconcileSeconds");
+        long interval = seconds == null ? 5 : Long.parseLong(seconds.trim());
+        int stripes = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        for (String id : ids.split(",")) {
+            if (id.trim().isEmpty()) {
+                continue;
+            }
+            int productId = Integer.parseInt(id.trim());
+            List<Integer> stock = em.createQuery(
+                    "SELECT p.stockNumber FROM Product p WHERE p.id = :id", Integer.class)
+                    .setParameter("id", productId)
+                    .getResultList();
+            if (stock.isEmpty()) {
+                LOG.log(Level.WARNING, "Hot stock product {0} does not exist", productId);
+                continue;
+            }
+            counters.put(productId, new StripedCounter(stripes, Math.max(0, stock.get(0))));
+        }
+
+        reconciler = executor.scheduleWithFixedDelay(this::reconcileAll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the reconcile task and applies the remaining journal rows.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (reconciler != null) {
+            reconciler.cancel(false);
+            reconcileAll();
+        }
+    }
+
+    /**
+     * Returns whether a product's stock is managed by the ledger.
+     * @param productId id of the product
+     * @return true for a hot product
+     */
+    public boolean isHot(int productId) {
+        return counters.containsKey(productId);
+    }
+
+    /**
+     * Returns the live available stock of a hot product.
+     * @param productId id of the product
+     * @return available stock, or -1 if the product is not hot
+     */
+    public int getAvailable(int productId) {
+        StripedCounter counter = counters.get(productId);
+        return counter == null ? -1 : counter.available();
+    }
+
+    /**
+     * Reserves stock of a hot product inside the caller's transaction.
+     * The stock is taken from memory immediately and put back if the
+     * transaction does not commit.
+     *
+     * @param productId id of a hot product
+     * @param quantity number of items to reserve, must be positive
+     * @return true if the stock was reserved
+     */
+    public boolean reserve(int productId, int quantity) {
+        StripedCounter counter = counters.get(productId);
+        if (counter == null || quantity <= 0) {
+            return false;
+        }
+        if (!counter.take(quantity)) {
+            refusedCount.incrementAndGet();
+            return false;
+        }
+        try {
+            em.persist(new HotStockDelta(productId, quantity));
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() { }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != Status.STATUS_COMMITTED) {
+                        counter.put(quantity);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            counter.put(quantity);
+            throw e;
+        }
+        reservedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns stock to a hot product inside the caller's transaction.
+     * The stock becomes available in memory once the transaction commits.
+     *
+     * @param productId id of a hot product
+     * @param quantity number of items to return, must be positive
+     * @return true if the product is hot and the return was recorded
+     */
+    public boolean release(int productId, int quantity) {
+        StripedCounter counter = counters.get(productId);
+        if (counter == null || quantity <= 0) {
+            return false;
+        }
+        em.persist(new HotStockDelta(productId, -quantity));
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() { }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    counter.put(quantity);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Applies all committed journal rows, in chunks of RECONCILE_LIMIT.
+     */
+    private void reconcileAll() {
+        try {
+            while (reconcile() == RECONCILE_LIMIT) {
+                // keep going until the journal is empty
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task
+            LOG.log(Level.WARNING, "Could not apply hot stock journal, will retry", e);
+        }
+    }
+
+    /**
+     * Applies up to RECONCILE_LIMIT committed journal rows to
+     * Product.stockNumber, one update per product, and deletes them,
+     * all in one transaction.
+     *
+     * @return number of journal rows applied
+     * @throws Exception if the journal could not be applied
+     */
+    private int reconcile() throws Exception {
+        try {
+            utx.begin();
+            List<Object[]> rows = em.createQuery(
+                    "SELECT d.id, d.productId, d.quantity FROM HotStockDelta d ORDER BY d.id", Object[].class)
+                    .setMaxResults(RECONCILE_LIMIT)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                utx.commit();
+                return 0;
+            }
+
+            List<Long> ids = new ArrayList<>(rows.size());
+            Map<Integer, Integer> net = new TreeMap<>();
+            for (Object[] row : rows) {
+                ids.add((Long) row[0]);
+                net.merge((Integer) row[1], (Integer) row[2], Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> entry : net.entrySet()) {
+                if (entry.getValue() != 0) {
+                    em.createQuery("UPDATE Product p SET p.stockNumber = p.stockNumber - :qty WHERE p.id = :id")
+                            .setParameter("qty", entry.getValue())
+                            .setParameter("id", entry.getKey())
+                            .executeUpdate();
+                }
+            }
+            // Delete exactly the rows that were summed, not rows committed meanwhile
+            em.createQuery("DELETE FROM HotStockDelta d WHERE d.id IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            utx.commit();
+
+            reconciledRows.addAndGet(rows.size());
+            return rows.size();
+        } catch (Exception e) {
+            try {
+                utx.rollback();
+            } catch (Exception ex) {
+                // Log rollback error if needed
+            }
+            throw e;
+        }
+    }
+
+    // --- Metrics getters ---
+
+    public int getHotProductCount() {
+        return counters.size();
+    }
+
+    public long getReservedCount() {
+        return reservedCount.get();
+    }
+
+    public long getRefusedCount() {
+        return refusedCount.get();
+    }
+
+    public long getReconciledRows() {
+        return reconciledRows.get();
+    }
+}
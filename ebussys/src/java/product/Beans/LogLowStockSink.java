@@ -0,0 +1,29 @@
+package product.beans;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.logging.Logger;
+
+/**
+ * Writes low-stock alerts to the server log.
+ */
+@ApplicationScoped
+public class LogLowStockSink implements LowStockSink {
+
+    private static final Logger LOG = Logger.getLogger(LogLowStockSink.class.getName());
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public void raised(LowStockAlert alert) {
+        LOG.warning(alert.getMessage());
+    }
+
+    @Override
+    public void cleared(LowStockAlert alert) {
+        LOG.info("Stock recovered: " + alert.getType() + " " + alert.getModel() + " (#" + alert.getProductId() + ")");
+    }
+}
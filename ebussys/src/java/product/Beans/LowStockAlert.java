@@ -0,0 +1,74 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A product whose stock fell below its low-stock threshold.
+ */
+public class LowStockAlert implements Serializable {
+
+    private final int productId;
+    private final String type;
+    private final String brand;
+    private final String model;
+    private final int stock;
+    private final int threshold;
+    private final Date raisedAt = new Date();
+
+    /**
+     * @param product the product running low
+     * @param stock its available stock
+     * @param threshold the threshold it fell below
+     */
+    public LowStockAlert(ProductSummary product, int stock, int threshold) {
+        this.productId = product.getId();
+        this.type = product.getType();
+        this.brand = product.getBrand();
+        this.model = product.getModel();
+        this.stock = stock;
+        this.threshold = threshold;
+    }
+
+    /** Whether the product is sold out */
+    public boolean isOutOfStock() {
+        return stock <= 0;
+    }
+
+    /** One-line description for logs and mails */
+    public String getMessage() {
+        return (isOutOfStock() ? "Out of stock: " : "Low stock: ")
+                + type + " " + brand + " " + model + " (#" + productId + ") has "
+                + stock + " left, threshold " + threshold;
+    }
+
+    // --- Getters ---
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public Date getRaisedAt() {
+        return raisedAt;
+    }
+}
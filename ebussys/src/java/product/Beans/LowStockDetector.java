@@ -0,0 +1,290 @@
+package product.beans;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduled, incremental detection of products running low on stock.
+ *
+ * The ProductCatalog reports every product whose stock changed in a
+ * committed transaction (or that was created or updated). The detector
+ * only collects those ids; its scheduled run re-evaluates just them
+ * against their threshold, so a run costs nothing when no stock moved
+ * and never scans the catalog. At startup, products that are already
+ * low are found with one query. When the catalog starts a new epoch,
+ * i.e. any product may have changed without being reported, the next
+ * run re-evaluates all products and current alerts.
+ *
+ * Thresholds, most specific first:
+ * - ebussys.lowStock.productThresholds, e.g. "12=20,15=0"
+ * - ebussys.lowStock.typeThresholds, e.g. "Laptop=3,Phone=10"
+ * - ebussys.lowStock.defaultThreshold
+ * A product is low when its stock is below its threshold. An alert is
+ * raised once when a product becomes low and cleared when it recovers;
+ * sinks in between only receive updates.
+ *
+ * Alerts go to the LowStockSink beans named in ebussys.lowStock.sinks
+ * (log, mail, dashboard). A failing sink is logged and does not keep
+ * the others, or the rest of the run, from being served.
+ */
+@Named(value = "lowStockDetector")
+@ApplicationScoped
+public class LowStockDetector implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(LowStockDetector.class.getName());
+
+    /** EntityManager for the startup query */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** Container executor running the detection task */
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    /** Catalog providing current stock and change notifications */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** Live stock of hot products */
+    @Inject
+    private HotStockLedger hotStock;
+
+    /** All available sinks; the configured ones are selected at startup */
+    @Inject
+    @Any
+    private Instance<LowStockSink> allSinks;
+
+    private final List<LowStockSink> sinks = new ArrayList<>();
+
+    /** Products whose stock changed since the last run */
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+
+    /** Current alerts by product id */
+    private final Map<Integer, LowStockAlert> active = new HashMap<>();
+
+    /** Catalog epoch of the last run; guarded by active */
+    private long seenEpoch;
+
+    private int defaultThreshold = 5;
+    private final Map<String, Integer> typeThresholds = new HashMap<>();
+    private final Map<Integer, Integer> productThresholds = new HashMap<>();
+
+    private ScheduledFuture<?> task;
+
+    // --- Metrics ---
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong evaluated = new AtomicLong();
+    private volatile long lastRunMicros;
+
+    /**
+     * Reads the configuration, finds products that are already low and
+     * starts the detection task.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        String seconds = context.getInitParameter("ebussys.lowStock.intervalSeconds");
+        long interval = seconds == null ? 30 : Long.parseLong(seconds.trim());
+        if (interval <= 0) {
+            return;  // disabled
+        }
+        String threshold = context.getInitParameter("ebussys.lowStock.defaultThreshold");
+        if (threshold != null && !threshold.trim().isEmpty()) {
+            defaultThreshold = Integer.parseInt(threshold.trim());
+        }
+        for (Map.Entry<String, String> e : pairs(context.getInitParameter("ebussys.lowStock.typeThresholds")).entrySet()) {
+            typeThresholds.put(e.getKey(), Integer.valueOf(e.getValue()));
+        }
+        for (Map.Entry<String, String> e : pairs(context.getInitParameter("ebussys.lowStock.productThresholds")).entrySet()) {
+            productThresholds.put(Integer.valueOf(e.getKey()), Integer.valueOf(e.getValue()));
+        }
+
+        String names = context.getInitParameter("ebussys.lowStock.sinks");
+        List<String> enabled = new ArrayList<>();
+        for (String name : (names == null ? "log,dashboard" : names).split(",")) {
+            enabled.add(name.trim());
+        }
+        for (LowStockSink sink : allSinks) {
+            if (enabled.contains(sink.getName())) {
+                sinks.add(sink);
+            }
+        }
+
+        synchronized (active) {
+            seenEpoch = catalog.getEpoch();
+        }
+        catalog.addStockListener(changed::add);
+
+        // Baseline: the products at or below the highest threshold are the only candidates
+        int maxThreshold = defaultThreshold;
+        for (int t : typeThresholds.values()) {
+            maxThreshold = Math.max(maxThreshold, t);
+        }
+        for (int t : productThresholds.values()) {
+            maxThreshold = Math.max(maxThreshold, t);
+        }
+        changed.addAll(em.createQuery("SELECT p.id FROM Product p WHERE p.stockNumber < :max", Integer.class)
+                .setParameter("max", maxThreshold)
+                .getResultList());
+        changed.addAll(productThresholds.keySet());
+
+        task = executor.scheduleWithFixedDelay(this::detect, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the detection task.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Re-evaluates the products whose stock changed since the last run.
+     */
+    void detect() {
+        long start = System.nanoTime();
+        try {
+            synchronized (active) {
+                long epoch = catalog.getEpoch();
+                if (epoch != seenEpoch) {
+                    seenEpoch = epoch;
+                    for (ProductSummary product : catalog.getProducts()) {
+                        changed.add(product.getId());
+                    }
+                    changed.addAll(active.keySet());  // clears alerts of deleted products
+                }
+                Iterator<Integer> it = changed.iterator();
+                while (it.hasNext()) {
+                    Integer productId = it.next();
+                    it.remove();
+                    evaluate(productId);
+                    evaluated.incrementAndGet();
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Low-stock detection failed", e);
+        } finally {
+            runs.incrementAndGet();
+            lastRunMicros = (System.nanoTime() - start) / 1000;
+        }
+    }
+
+    private void evaluate(Integer productId) {
+        ProductSummary product = catalog.getProduct(productId);
+        LowStockAlert previous = active.get(productId);
+        if (product == null) {
+            if (previous != null) {
+                active.remove(productId);
+                deliver(previous, false);
+            }
+            return;
+        }
+        int stock = hotStock.isHot(productId) ? hotStock.getAvailable(productId) : product.getStockNumber();
+        int threshold = thresholdOf(product);
+
+        if (stock < threshold) {
+            LowStockAlert alert = new LowStockAlert(product, stock, threshold);
+            active.put(productId, alert);
+            if (previous == null) {
+                deliver(alert, true);
+            } else if (previous.getStock() != stock) {
+                for (LowStockSink sink : sinks) {
+                    try {
+                        sink.updated(alert);
+                    } catch (RuntimeException e) {
+                        LOG.log(Level.WARNING, "Low-stock sink " + sink.getName() + " failed", e);
+                    }
+                }
+            }
+        } else if (previous != null) {
+            active.remove(productId);
+            deliver(previous, false);
+        }
+    }
+
+    private void deliver(LowStockAlert alert, boolean raised) {
+        for (LowStockSink sink : sinks) {
+            try {
+                if (raised) {
+                    sink.raised(alert);
+                } else {
+                    sink.cleared(alert);
+                }
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Low-stock sink " + sink.getName() + " failed", e);
+            }
+        }
+    }
+
+    private int thresholdOf(ProductSummary product) {
+        Integer threshold = productThresholds.get(product.getId());
+        if (threshold == null) {
+            threshold = typeThresholds.get(product.getType());
+        }
+        return threshold == null ? defaultThreshold : threshold;
+    }
+
+    /** Parses "a=1,b=2" into a map */
+    private static Map<String, String> pairs(String text) {
+        Map<String, String> map = new HashMap<>();
+        if (text == null) {
+            return map;
+        }
+        for (String pair : text.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                map.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+            }
+        }
+        return map;
+    }
+
+    // --- Metrics ---
+
+    /** Number of detection runs */
+    public long getRuns() {
+        return runs.get();
+    }
+
+    /** Products evaluated over all runs */
+    public long getEvaluated() {
+        return evaluated.get();
+    }
+
+    /** Duration of the last run in microseconds */
+    public long getLastRunMicros() {
+        return lastRunMicros;
+    }
+
+    /** Products waiting for the next run */
+    public int getPending() {
+        return changed.size();
+    }
+}
@@ -0,0 +1,37 @@
+package product.beans;
+
+/**
+ * Destination for low-stock alerts.
+ *
+ * Implementations are CDI beans; LowStockDetector delivers to the sinks
+ * whose names are listed in the ebussys.lowStock.sinks context parameter.
+ * Delivery runs on the detector's background thread and must not throw
+ * for ordinary delivery failures.
+ */
+public interface LowStockSink {
+
+    /**
+     * Name used to enable the sink in ebussys.lowStock.sinks.
+     * @return the sink name, e.g. "log"
+     */
+    String getName();
+
+    /**
+     * Called when a product falls below its threshold.
+     * @param alert the new alert
+     */
+    void raised(LowStockAlert alert);
+
+    /**
+     * Called when the stock of a product that already has an alert
+     * changed but is still below the threshold.
+     * @param alert the alert with the current stock
+     */
+    default void updated(LowStockAlert alert) { }
+
+    /**
+     * Called when a product that had an alert is back at or above its threshold.
+     * @param alert the alert that no longer applies
+     */
+    default void cleared(LowStockAlert alert) { }
+}
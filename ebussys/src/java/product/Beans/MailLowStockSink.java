@@ -0,0 +1,89 @@
+package product.beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.servlet.ServletContext;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mails low-stock alerts through the local SMTP server, like the
+ * verification codes of AutenticationBean. The recipients are taken from
+ * the ebussys.lowStock.mailTo context parameter (comma separated).
+ *
+ * Mails are sent on the container's executor with SMTP timeouts, so a
+ * slow or hung mail server never holds up the LowStockDetector.
+ */
+@ApplicationScoped
+public class MailLowStockSink implements LowStockSink {
+
+    private static final Logger LOG = Logger.getLogger(MailLowStockSink.class.getName());
+
+    /** Connect, read and write timeout of the SMTP connection, in milliseconds */
+    private static final String SMTP_TIMEOUT = "10000";
+
+    /** Container executor sending the mails */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Recipients of the alerts, empty to send nothing */
+    private String recipients = "";
+
+    /**
+     * Reads the recipients from the context parameters.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        String to = context.getInitParameter("ebussys.lowStock.mailTo");
+        recipients = to == null ? "" : to.trim();
+    }
+
+    @Override
+    public String getName() {
+        return "mail";
+    }
+
+    @Override
+    public void raised(LowStockAlert alert) {
+        if (recipients.isEmpty()) {
+            return;
+        }
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", 2525);
+        props.put("mail.smtp.connectiontimeout", SMTP_TIMEOUT);
+        props.put("mail.smtp.timeout", SMTP_TIMEOUT);
+        props.put("mail.smtp.writetimeout", SMTP_TIMEOUT);
+        MimeMessage message = new MimeMessage(Session.getInstance(props));
+        try {
+            message.setFrom(new InternetAddress("CENTRE@glassfish.com"));
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipients));
+            message.setSubject(alert.isOutOfStock() ? "Out of stock: " + alert.getModel()
+                    : "Low stock: " + alert.getModel());
+            message.setSentDate(new Date());
+            message.setText(alert.getMessage());
+        } catch (MessagingException e) {
+            LOG.log(Level.WARNING, "Could not mail low-stock alert", e);
+            return;
+        }
+        executor.submit(() -> {
+            try {
+                Transport.send(message);
+            } catch (MessagingException e) {
+                LOG.log(Level.WARNING, "Could not mail low-stock alert", e);
+            }
+        });
+    }
+}
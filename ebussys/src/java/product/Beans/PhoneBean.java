@@ -2,6 +2,7 @@ package product.beans;
 
 import jakarta.annotation.Resource;
 import jakarta.enterprise.context.SessionScoped;
+import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -10,6 +11,8 @@ import jakarta.faces.application.FacesMessage;
 import jakarta.faces.context.FacesContext;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -24,6 +27,9 @@ import java.util.List;
 @SessionScoped
 public class PhoneBean implements Serializable {
 
+    /** Phones shown per page of search results */
+    private static final int SEARCH_PAGE_SIZE = 20;
+
     /** JPA EntityManager for performing DB operations */
     @PersistenceContext
     private EntityManager em;
@@ -38,11 +44,32 @@ public class PhoneBean implements Serializable {
     /** Search keyword to filter phones by model */
     private String searchModel;
 
-    /** List of phones matching the last search */
+    /** Phones on the current page of search results */
     private List<Phone> searchResults;
 
-    /** Cached list of all phones from the database */
-    private List<Phone> allPhones;
+    /** Ids of all matches of the last search, in id order */
+    private List<Integer> searchIds;
+
+    /** Current page of search results, from 0 */
+    private int searchPage;
+
+    /** Shared catalog holding the list of all phones */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** Records the price of created products */
+    @Inject
+    private PriceHistoryService priceHistory;
+
+    /** Facet values selected on the stock page */
+    private FacetSelection facetSelection =
+            new FacetSelection(ProductFacetIndex.Facet.TYPE, "Phone");
+
+    /** Sort order and price range chosen on the stock page */
+    private StockListOptions listOptions = new StockListOptions();
+
+    /** Result of the current facet selection, rebuilt before each render */
+    private ProductFacetIndex.Result facetResult;
 
     /** Message to communicate operation success to UI */
     private String successMessage;
@@ -106,25 +133,85 @@ public class PhoneBean implements Serializable {
     }
 
     /**
-     * Returns the cached list of all phones.
-     * Loads from the database if cache is empty.
+     * Returns the list of all phones from the shared product catalog.
+     * The catalog loads from the database only on first use.
      * 
-     * @return allPhones list of all Phone entities.
+     * @return list of summaries of all phones.
      */
-    public List<Phone> getAllPhones() {
-        if (allPhones == null) {
-            allPhones = em.createQuery("SELECT p FROM Phone p", Phone.class).getResultList();
+    public List<ProductSummary> getAllPhones() {
+        return catalog.getPhones();
+    }
+
+    /**
+     * Rebuilds the filtered laptop list for the current facet selection.
+     * Called once before the stock page renders.
+     */
+    public void refreshFacets() {
+        facetResult = catalog.filter(facetSelection.getSelected(), listOptions);
+    }
+
+    /**
+     * Returns the phones matching the selected facets and price range, in
+     * the chosen order, and the facet counts.
+     *
+     * @return the result of the current facet selection
+     */
+    public ProductFacetIndex.Result getFacetResult() {
+        if (facetResult == null) {
+            refreshFacets();
         }
-        return allPhones;
+        return facetResult;
     }
 
     /**
-     * Sets the cached list of all phones.
-     * 
-     * @param allPhones list of all Phone entities to cache.
+     * Returns the current facet selection.
+     *
+     * @return facetSelection the selected facet values.
      */
-    public void setAllPhones(List<Phone> allPhones) {
-        this.allPhones = allPhones;
+    public FacetSelection getFacetSelection() {
+        return facetSelection;
+    }
+
+    /**
+     * Selects or deselects a facet value and refilters the phones.
+     *
+     * @param value the facet value to toggle.
+     * @return null to stay on the same page.
+     */
+    public String toggleFacet(ProductFacetIndex.FacetCount value) {
+        facetSelection.toggle(value.getFacet(), value.getValue());
+        refreshFacets();
+        return null;
+    }
+
+    /**
+     * Returns the sort order and price range of the stock page.
+     *
+     * @return listOptions the current list options.
+     */
+    public StockListOptions getListOptions() {
+        return listOptions;
+    }
+
+    /**
+     * Applies changed sort order or price range to the phones.
+     *
+     * @return null to stay on the same page.
+     */
+    public String applyListOptions() {
+        refreshFacets();
+        return null;
+    }
+
+    /**
+     * Clears all facet selections.
+     *
+     * @return null to stay on the same page.
+     */
+    public String clearFacets() {
+        facetSelection.clear();
+        refreshFacets();
+        return null;
     }
 
     /**
@@ -148,7 +235,7 @@ public class PhoneBean implements Serializable {
     /**
      * Creates a new Phone entity by persisting it to the database.
      * Manages transaction begin and commit.
-     * Resets current phone and cached lists on success.
+     * Resets current phone and adds the phone to the catalog on success.
      * Displays FacesMessage on success or failure.
      * 
      * @return navigation string for redirection on success, null on failure.
@@ -157,15 +244,23 @@ public class PhoneBean implements Serializable {
         try {
             utx.begin();
             em.persist(getCurrentPhone());
+            em.flush();  // assigns the id
+            priceHistory.record(currentPhone.getId(), currentPhone.getPrice());
             utx.commit();
 
             successMessage = "Successfully created the phone: " + currentPhone.getModel();
+            catalog.added(currentPhone);
             currentPhone = null;   // Reset form object
-            allPhones = null;      // Invalidate cached list
             searchResults = null;  // Clear previous search results
+            searchIds = null;
 
             return "stockPhones.xhtml?faces-redirect=true&success=true&message=" + successMessage;
         } catch (Exception e) {
+            try {
+                utx.rollback();
+            } catch (Exception rollbackEx) {
+                // Log rollback error
+            }
             FacesContext.getCurrentInstance().addMessage(null,
                 new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error creating phone", e.getMessage()));
             return null;  // Stay on current page
@@ -173,18 +268,80 @@ public class PhoneBean implements Serializable {
     }
 
     /**
-     * Searches phones by matching the model with the search keyword.
+     * Searches phones whose model or brand contains the search keyword.
      * If the search keyword is empty or null, clears the search results.
-     * Otherwise performs a case-insensitive LIKE search.
+     * Otherwise performs a case-insensitive substring search on the
+     * catalog's trigram index, then loads the full Phone entities of
+     * the first page of matches only.
      */
     public void searchPhones() {
+        searchPage = 0;
         if (searchModel == null || searchModel.trim().isEmpty()) {
+            searchIds = null;
             searchResults = null;
-        } else {
-            searchResults = em.createQuery("SELECT p FROM Phone p WHERE LOWER(p.model) LIKE :model", Phone.class)
-                    .setParameter("model", "%" + searchModel.toLowerCase() + "%")
-                    .getResultList();
+            return;
+        }
+        searchIds = new ArrayList<>();
+        for (ProductSummary p : catalog.search(searchModel)) {
+            if (p.isPhone()) {
+                searchIds.add(p.getId());
+            }
+        }
+        Collections.sort(searchIds);
+        loadSearchPage();
+    }
+
+    /**
+     * Shows the next page of search results.
+     * @return null to stay on the same page
+     */
+    public String nextSearchPage() {
+        if (searchPage + 1 < getSearchPageCount()) {
+            searchPage++;
+            loadSearchPage();
+        }
+        return null;
+    }
+
+    /**
+     * Shows the previous page of search results.
+     * @return null to stay on the same page
+     */
+    public String previousSearchPage() {
+        if (searchPage > 0) {
+            searchPage--;
+            loadSearchPage();
         }
+        return null;
+    }
+
+    /**
+     * Loads the full phone rows of the current page only, so one IN list
+     * never holds more than SEARCH_PAGE_SIZE ids.
+     */
+    private void loadSearchPage() {
+        int from = searchPage * SEARCH_PAGE_SIZE;
+        List<Integer> ids = searchIds.subList(Math.min(from, searchIds.size()),
+                Math.min(from + SEARCH_PAGE_SIZE, searchIds.size()));
+        searchResults = ids.isEmpty() ? new ArrayList<>()
+                : em.createQuery("SELECT p FROM Phone p WHERE p.id IN :ids ORDER BY p.id", Phone.class)
+                        .setParameter("ids", ids)
+                        .getResultList();
+    }
+
+    /** Current page of search results, from 1 */
+    public int getSearchPage() {
+        return searchPage + 1;
+    }
+
+    /** Number of pages of search results */
+    public int getSearchPageCount() {
+        return searchIds == null ? 0 : Math.max(1, (searchIds.size() + SEARCH_PAGE_SIZE - 1) / SEARCH_PAGE_SIZE);
+    }
+
+    /** Number of matches of the last search */
+    public int getSearchTotal() {
+        return searchIds == null ? 0 : searchIds.size();
     }
 
     /**
@@ -0,0 +1,140 @@
+package product.beans;
+
+import java.io.Serializable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * One chunk of a product's price history.
+ *
+ * A chunk holds up to PriceHistoryService.MAX_POINTS consecutive price
+ * changes of one product. Its first point is stored in firstAt and
+ * firstCents; each further point is stored in series as two zigzag
+ * varints, the seconds and cents since the previous point, so a change
+ * usually takes four to six bytes. lastAt and lastCents repeat the
+ * newest point, so a change can be appended without decoding the series.
+ *
+ * Times are seconds since the epoch, prices are in cents.
+ *
+ * Mapped to the "PRICE_HISTORY" table in the database; the
+ * (productId, firstAt) index finds the chunk covering a given time.
+ */
+@Entity
+@Table(name = "PRICE_HISTORY", indexes = {
+    @Index(name = "idx_price_history_product", columnList = "productId, firstAt")
+})
+public class PriceHistory implements Serializable {
+
+    /** Primary key, auto-generated ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Id of the product */
+    private int productId;
+
+    /** Time of the first point */
+    private long firstAt;
+
+    /** Price at the first point */
+    private long firstCents;
+
+    /** Time of the newest point */
+    private long lastAt;
+
+    /** Price at the newest point */
+    private long lastCents;
+
+    /** Number of points, including the first */
+    private int points;
+
+    /** Delta-encoded points after the first */
+    @Column(length = 4096)
+    private byte[] series;
+
+    /** Default constructor */
+    public PriceHistory() {}
+
+    /**
+     * Starts a chunk with its first point.
+     * @param productId id of the product
+     * @param at time of the point
+     * @param cents price at the point
+     */
+    public PriceHistory(int productId, long at, long cents) {
+        this.productId = productId;
+        this.firstAt = at;
+        this.firstCents = cents;
+        this.lastAt = at;
+        this.lastCents = cents;
+        this.points = 1;
+        this.series = new byte[0];
+    }
+
+    // === Getters and Setters === //
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public long getFirstAt() {
+        return firstAt;
+    }
+
+    public void setFirstAt(long firstAt) {
+        this.firstAt = firstAt;
+    }
+
+    public long getFirstCents() {
+        return firstCents;
+    }
+
+    public void setFirstCents(long firstCents) {
+        this.firstCents = firstCents;
+    }
+
+    public long getLastAt() {
+        return lastAt;
+    }
+
+    public void setLastAt(long lastAt) {
+        this.lastAt = lastAt;
+    }
+
+    public long getLastCents() {
+        return lastCents;
+    }
+
+    public void setLastCents(long lastCents) {
+        this.lastCents = lastCents;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+
+    public byte[] getSeries() {
+        return series;
+    }
+
+    public void setSeries(byte[] series) {
+        this.series = series;
+    }
+}
@@ -0,0 +1,296 @@
+package product.beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+import jakarta.transaction.UserTransaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records product price changes and answers what a price was at a given
+ * time, without keeping the history on the PRODUCT table or scanning
+ * orders.
+ *
+ * The history of a product is a series of PriceHistory chunks; each
+ * holds up to MAX_POINTS changes, delta-encoded. A change is appended
+ * to the product's newest chunk with one locked read and one update;
+ * a lookup reads the one chunk covering the time through the
+ * (productId, firstAt) index and decodes at most MAX_POINTS points.
+ * At a few bytes per change, years of weekly changes of 500k products
+ * stay in the hundreds of megabytes.
+ *
+ * record() and recordAll() join the caller's transaction, so a price is
+ * recorded together with the change that set it. Only changes are
+ * recorded; a price equal to the newest recorded one is ignored.
+ *
+ * Products created before the history existed get their current price
+ * as first point on startup, so lookups before that time return null.
+ */
+@Named(value = "priceHistory")
+@ApplicationScoped
+public class PriceHistoryService implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(PriceHistoryService.class.getName());
+
+    /** Maximum number of points per chunk */
+    public static final int MAX_POINTS = 256;
+
+    /** Series size after which a new chunk is started; a point takes at most 20 bytes */
+    private static final int MAX_SERIES_BYTES = 4096 - 20;
+
+    private static final String BACKFILL =
+            "INSERT INTO PRICE_HISTORY (PRODUCTID, FIRSTAT, FIRSTCENTS, LASTAT, LASTCENTS, POINTS, SERIES) "
+            + "SELECT p.ID, ?1, ROUND(p.PRICE * 100), ?2, ROUND(p.PRICE * 100), 1, ?3 FROM PRODUCT p "
+            + "WHERE NOT EXISTS (SELECT 1 FROM PRICE_HISTORY h WHERE h.PRODUCTID = p.ID)";
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for the startup backfill */
+    @Resource
+    private UserTransaction utx;
+
+    /** Container executor running the startup backfill */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /**
+     * Starts the backfill of products without history in the background.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        executor.submit(this::backfill);
+    }
+
+    /**
+     * Records the current price of a product inside the caller's
+     * transaction. The product must have been flushed, so it has an id.
+     *
+     * @param productId id of the product
+     * @param price its new price
+     */
+    public void record(int productId, double price) {
+        recordAll(Collections.singletonMap(productId, price));
+    }
+
+    /**
+     * Records the current prices of several products inside the caller's
+     * transaction, reading their newest chunks with one query.
+     *
+     * @param prices new price by product id
+     */
+    public void recordAll(Map<Integer, Double> prices) {
+        if (prices.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        Map<Integer, PriceHistory> latest = new HashMap<>();
+        for (PriceHistory h : em.createQuery(
+                "SELECT h FROM PriceHistory h WHERE h.productId IN :ids AND h.firstAt = "
+                + "(SELECT MAX(h2.firstAt) FROM PriceHistory h2 WHERE h2.productId = h.productId)",
+                PriceHistory.class)
+                .setParameter("ids", new ArrayList<>(prices.keySet()))
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()) {
+            PriceHistory other = latest.get(h.getProductId());
+            if (other == null || other.getId() < h.getId()) {
+                latest.put(h.getProductId(), h);
+            }
+        }
+
+        for (Map.Entry<Integer, Double> entry : prices.entrySet()) {
+            long cents = Math.round(entry.getValue() * 100);
+            PriceHistory h = latest.get(entry.getKey());
+            if (h == null) {
+                em.persist(new PriceHistory(entry.getKey(), now, cents));
+            } else if (h.getLastCents() != cents) {
+                // Keep the series ordered if the clock went back
+                long at = Math.max(now, h.getLastAt());
+                if (h.getPoints() >= MAX_POINTS || h.getSeries().length >= MAX_SERIES_BYTES) {
+                    em.persist(new PriceHistory(entry.getKey(), at, cents));
+                } else {
+                    append(h, at, cents);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the price a product had at a given time.
+     *
+     * @param productId id of the product
+     * @param at the time
+     * @return the price, null if there is no history before that time
+     */
+    public Double priceAt(int productId, Date at) {
+        long seconds = at.getTime() / 1000;
+        PriceHistory chunk = chunkAt(productId, seconds);
+        if (chunk == null) {
+            return null;
+        }
+        PricePoint price = null;
+        for (PricePoint point : decode(chunk)) {
+            if (point.getAtSeconds() > seconds) {
+                break;
+            }
+            price = point;
+        }
+        return price.getPrice();
+    }
+
+    /**
+     * Returns the price changes of a product in a time range.
+     *
+     * @param productId id of the product
+     * @param from start of the range
+     * @param to end of the range, inclusive
+     * @return the price in effect at from, if any, followed by the changes
+     *         after from up to to, oldest first
+     */
+    public List<PricePoint> history(int productId, Date from, Date to) {
+        long start = from.getTime() / 1000;
+        long end = to.getTime() / 1000;
+        List<PriceHistory> chunks = new ArrayList<>();
+        PriceHistory first = chunkAt(productId, start);
+        if (first != null) {
+            chunks.add(first);
+        }
+        chunks.addAll(em.createQuery(
+                "SELECT h FROM PriceHistory h WHERE h.productId = :id "
+                + "AND h.firstAt > :from AND h.firstAt <= :to ORDER BY h.firstAt, h.id",
+                PriceHistory.class)
+                .setParameter("id", productId)
+                .setParameter("from", start)
+                .setParameter("to", end)
+                .getResultList());
+
+        List<PricePoint> points = new ArrayList<>();
+        PricePoint before = null;
+        for (PriceHistory chunk : chunks) {
+            for (PricePoint point : decode(chunk)) {
+                if (point.getAtSeconds() <= start) {
+                    before = point;
+                } else if (point.getAtSeconds() <= end) {
+                    points.add(point);
+                }
+            }
+        }
+        if (before != null) {
+            points.add(0, before);
+        }
+        return points;
+    }
+
+    /**
+     * Finds the newest chunk starting at or before a time.
+     */
+    private PriceHistory chunkAt(int productId, long seconds) {
+        List<PriceHistory> chunks = em.createQuery(
+                "SELECT h FROM PriceHistory h WHERE h.productId = :id AND h.firstAt <= :at "
+                + "ORDER BY h.firstAt DESC, h.id DESC", PriceHistory.class)
+                .setParameter("id", productId)
+                .setParameter("at", seconds)
+                .setMaxResults(1)
+                .getResultList();
+        return chunks.isEmpty() ? null : chunks.get(0);
+    }
+
+    /**
+     * Gives every product without history its current price as first point.
+     */
+    private void backfill() {
+        try {
+            utx.begin();
+            long now = System.currentTimeMillis() / 1000;
+            int products = em.createNativeQuery(BACKFILL)
+                    .setParameter(1, now)
+                    .setParameter(2, now)
+                    .setParameter(3, new byte[0])
+                    .executeUpdate();
+            utx.commit();
+            if (products > 0) {
+                LOG.log(Level.INFO, "Started price history of {0} products", products);
+            }
+        } catch (Exception e) {
+            try {
+                utx.rollback();
+            } catch (Exception ex) {
+                // Log rollback error if needed
+            }
+            LOG.log(Level.SEVERE, "Price history backfill failed", e);
+        }
+    }
+
+    // --- Encoding ---
+
+    /**
+     * Appends a point to a chunk as zigzag varint deltas from its newest point.
+     */
+    private static void append(PriceHistory chunk, long at, long cents) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(chunk.getSeries().length + 8);
+        out.write(chunk.getSeries(), 0, chunk.getSeries().length);
+        writeVarLong(out, at - chunk.getLastAt());
+        writeVarLong(out, cents - chunk.getLastCents());
+        chunk.setSeries(out.toByteArray());
+        chunk.setLastAt(at);
+        chunk.setLastCents(cents);
+        chunk.setPoints(chunk.getPoints() + 1);
+    }
+
+    /**
+     * Decodes all points of a chunk, oldest first.
+     */
+    private static List<PricePoint> decode(PriceHistory chunk) {
+        List<PricePoint> points = new ArrayList<>(chunk.getPoints());
+        long at = chunk.getFirstAt();
+        long cents = chunk.getFirstCents();
+        points.add(new PricePoint(at, cents));
+        byte[] series = chunk.getSeries();
+        int[] pos = {0};
+        while (pos[0] < series.length) {
+            at += readVarLong(series, pos);
+            cents += readVarLong(series, pos);
+            points.add(new PricePoint(at, cents));
+        }
+        return points;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long v = (value << 1) ^ (value >> 63);  // zigzag: small negatives stay short
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(byte[] in, int[] pos) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
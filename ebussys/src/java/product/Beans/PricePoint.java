@@ -0,0 +1,35 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A product's price from a given time on, as returned by
+ * PriceHistoryService.
+ */
+public class PricePoint implements Serializable {
+
+    /** Time the price took effect, in seconds since the epoch */
+    private final long at;
+
+    /** Price in cents */
+    private final long cents;
+
+    PricePoint(long at, long cents) {
+        this.at = at;
+        this.cents = cents;
+    }
+
+    /** Time the price took effect */
+    public Date getAt() {
+        return new Date(at * 1000);
+    }
+
+    public double getPrice() {
+        return cents / 100.0;
+    }
+
+    long getAtSeconds() {
+        return at;
+    }
+}
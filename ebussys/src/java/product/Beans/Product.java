@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
@@ -17,6 +18,8 @@ import jakarta.persistence.DiscriminatorType;
  * Includes common properties shared by all products.
  * 
  * The discriminator column "DTYPE" indicates the concrete subclass type.
+ * The (brand, model) index serves the upsert lookups of ProductImportService,
+ * the model index the lookups by model of OrderImportService.
  * 
  * Implements Serializable for entity transfer and storage.
  * 
@@ -24,7 +27,10 @@ import jakarta.persistence.DiscriminatorType;
  * 
  */
 @Entity
-@Table(name = "PRODUCT")
+@Table(name = "PRODUCT", indexes = {
+    @Index(name = "idx_product_brand_model", columnList = "brand, model"),
+    @Index(name = "idx_product_model", columnList = "model")
+})
 @Inheritance(strategy = InheritanceType.JOINED)
 @DiscriminatorColumn(name = "DTYPE", discriminatorType = DiscriminatorType.STRING)
 public abstract class Product implements Serializable {
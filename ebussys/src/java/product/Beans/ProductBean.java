@@ -2,6 +2,7 @@ package product.beans;
 
 import jakarta.annotation.Resource;
 import jakarta.enterprise.context.SessionScoped;
+import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -10,6 +11,8 @@ import jakarta.faces.application.FacesMessage;
 import jakarta.faces.context.FacesContext;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -24,6 +27,9 @@ import java.util.List;
 @SessionScoped
 public class ProductBean implements Serializable {
 
+    /** Laptops shown per page of search results */
+    private static final int SEARCH_PAGE_SIZE = 20;
+
     /** JPA EntityManager for database operations */
     @PersistenceContext
     private EntityManager em;
@@ -38,11 +44,32 @@ public class ProductBean implements Serializable {
     /** Search string input to filter laptops by model */
     private String searchModel;
 
-    /** List to hold laptops returned from search queries */
+    /** Laptops on the current page of search results */
     private List<Laptop> searchResults;
 
-    /** Cached list of all laptops to minimize database calls */
-    private List<Laptop> allLaptops;
+    /** Ids of all matches of the last search, in id order */
+    private List<Integer> searchIds;
+
+    /** Current page of search results, from 0 */
+    private int searchPage;
+
+    /** Shared catalog holding the list of all laptops */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** Records the price of created products */
+    @Inject
+    private PriceHistoryService priceHistory;
+
+    /** Facet values selected on the stock page */
+    private FacetSelection facetSelection =
+            new FacetSelection(ProductFacetIndex.Facet.TYPE, "Laptop");
+
+    /** Sort order and price range chosen on the stock page */
+    private StockListOptions listOptions = new StockListOptions();
+
+    /** Result of the current facet selection, rebuilt before each render */
+    private ProductFacetIndex.Result facetResult;
 
     /** Message indicating success status of operations */
     private String successMessage;
@@ -106,25 +133,98 @@ public class ProductBean implements Serializable {
     }
 
     /**
-     * Gets the cached list of all laptops from the database.
-     * Queries database only if cache is empty.
+     * Gets the list of all laptops from the shared product catalog.
+     * The catalog queries the database only on first use.
      * 
-     * @return allLaptops List of all laptops.
+     * @return List of summaries of all laptops.
+     */
+    public List<ProductSummary> getAllLaptops() {
+        return catalog.getLaptops();
+    }
+
+    /**
+     * Rebuilds the filtered laptop list for the current facet selection.
+     * Called once before the stock page renders.
+     */
+    public void refreshFacets() {
+        facetResult = catalog.filter(facetSelection.getSelected(), listOptions);
+    }
+
+    /**
+     * Returns the laptops matching the selected facets and price range, in
+     * the chosen order, and the facet counts.
+     *
+     * @return the result of the current facet selection
      */
-    public List<Laptop> getAllLaptops() {
-        if (allLaptops == null) {
-            allLaptops = em.createQuery("SELECT p FROM Laptop p", Laptop.class).getResultList();
+    public ProductFacetIndex.Result getFacetResult() {
+        if (facetResult == null) {
+            refreshFacets();
         }
-        return allLaptops;
+        return facetResult;
     }
 
     /**
-     * Sets the cached list of all laptops.
-     * 
-     * @param allLaptops The list of all laptops to cache.
+     * Returns the current facet selection.
+     *
+     * @return facetSelection the selected facet values.
+     */
+    public FacetSelection getFacetSelection() {
+        return facetSelection;
+    }
+
+    /**
+     * Selects or deselects a facet value and refilters the laptops.
+     *
+     * @param value the facet value to toggle.
+     * @return null to stay on the same page.
+     */
+    public String toggleFacet(ProductFacetIndex.FacetCount value) {
+        facetSelection.toggle(value.getFacet(), value.getValue());
+        refreshFacets();
+        return null;
+    }
+
+    /**
+     * Returns the sort order and price range of the stock page.
+     *
+     * @return listOptions the current list options.
      */
-    public void setAllLaptops(List<Laptop> allLaptops) {
-        this.allLaptops = allLaptops;
+    public StockListOptions getListOptions() {
+        return listOptions;
+    }
+
+    /**
+     * Applies changed sort order or price range to the laptops.
+     *
+     * @return null to stay on the same page.
+     */
+    public String applyListOptions() {
+        refreshFacets();
+        return null;
+    }
+
+    /**
+     * Clears all facet selections.
+     *
+     * @return null to stay on the same page.
+     */
+    public String clearFacets() {
+        facetSelection.clear();
+        refreshFacets();
+        return null;
+    }
+
+    /**
+     * Reloads the product catalog, e.g. after products were changed
+     * directly in the database.
+     *
+     * @return null to stay on the same page.
+     */
+    public String reloadCatalog() {
+        catalog.invalidate();
+        FacesContext.getCurrentInstance().addMessage(null,
+            new FacesMessage("The product catalog will be reloaded on next use"));
+        return null;
     }
 
     /**
@@ -148,7 +248,7 @@ public class ProductBean implements Serializable {
     /**
      * Persists the current Laptop entity into the database.
      * Begins a transaction, persists the entity, commits the transaction.
-     * Resets the currentLaptop and cached lists on success.
+     * Resets the currentLaptop and adds the laptop to the catalog on success.
      * Shows FacesMessage on success or error.
      * 
      * @return navigation string to redirect to laptop list page on success, null on error.
@@ -157,16 +257,24 @@ public class ProductBean implements Serializable {
         try {
             utx.begin();
             em.persist(getCurrentLaptop());
+            em.flush();  // assigns the id
+            priceHistory.record(currentLaptop.getId(), currentLaptop.getPrice());
             utx.commit();
 
             successMessage = "Successfully created the laptop: " + currentLaptop.getModel();
+            catalog.added(currentLaptop);
             currentLaptop = null;   // reset form
-            allLaptops = null;      // invalidate cache to refresh
             searchResults = null;   // clear search results
+            searchIds = null;
 
             // Redirect to laptops listing page with success message
             return "stockLaptops.xhtml?faces-redirect=true&success=true&message=" + successMessage;
         } catch (Exception e) {
+            try {
+                utx.rollback();
+            } catch (Exception rollbackEx) {
+                // Log rollback error
+            }
             FacesContext.getCurrentInstance().addMessage(null,
                 new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error creating laptop", e.getMessage()));
             return null;  // stay on current page on error
@@ -174,18 +282,80 @@ public class ProductBean implements Serializable {
     }
 
     /**
-     * Searches for laptops by matching model name.
+     * Searches for laptops whose model or brand contains the search string.
      * If searchModel is empty or null, clears the search results.
-     * Otherwise, performs a case-insensitive LIKE query on Laptop model field.
+     * Otherwise, runs a case-insensitive substring search on the catalog's
+     * trigram index instead of a LIKE '%x%' scan of the database, then
+     * loads the full Laptop entities of the first page of matches only.
      */
     public void searchLaptops() {
+        searchPage = 0;
         if (searchModel == null || searchModel.trim().isEmpty()) {
+            searchIds = null;
             searchResults = null;
-        } else {
-            searchResults = em.createQuery("SELECT p FROM Laptop p WHERE LOWER(p.model) LIKE :model", Laptop.class)
-                    .setParameter("model", "%" + searchModel.toLowerCase() + "%")
-                    .getResultList();
+            return;
+        }
+        searchIds = new ArrayList<>();
+        for (ProductSummary p : catalog.search(searchModel)) {
+            if (p.isLaptop()) {
+                searchIds.add(p.getId());
+            }
+        }
+        Collections.sort(searchIds);
+        loadSearchPage();
+    }
+
+    /**
+     * Shows the next page of search results.
+     * @return null to stay on the same page
+     */
+    public String nextSearchPage() {
+        if (searchPage + 1 < getSearchPageCount()) {
+            searchPage++;
+            loadSearchPage();
+        }
+        return null;
+    }
+
+    /**
+     * Shows the previous page of search results.
+     * @return null to stay on the same page
+     */
+    public String previousSearchPage() {
+        if (searchPage > 0) {
+            searchPage--;
+            loadSearchPage();
         }
+        return null;
+    }
+
+    /**
+     * Loads the full laptop rows of the current page only, so one IN list
+     * never holds more than SEARCH_PAGE_SIZE ids.
+     */
+    private void loadSearchPage() {
+        int from = searchPage * SEARCH_PAGE_SIZE;
+        List<Integer> ids = searchIds.subList(Math.min(from, searchIds.size()),
+                Math.min(from + SEARCH_PAGE_SIZE, searchIds.size()));
+        searchResults = ids.isEmpty() ? new ArrayList<>()
+                : em.createQuery("SELECT p FROM Laptop p WHERE p.id IN :ids ORDER BY p.id", Laptop.class)
+                        .setParameter("ids", ids)
+                        .getResultList();
+    }
+
+    /** Current page of search results, from 1 */
+    public int getSearchPage() {
+        return searchPage + 1;
+    }
+
+    /** Number of pages of search results */
+    public int getSearchPageCount() {
+        return searchIds == null ? 0 : Math.max(1, (searchIds.size() + SEARCH_PAGE_SIZE - 1) / SEARCH_PAGE_SIZE);
+    }
+
+    /** Number of matches of the last search */
+    public int getSearchTotal() {
+        return searchIds == null ? 0 : searchIds.size();
     }
 
     /**
@@ -0,0 +1,710 @@
+package product.beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Application-wide, read-mostly cache of the product catalog.
+ *
+ * ProductBean, PhoneBean and OrderBean read the catalog from here instead
+ * of each session holding its own copy. The catalog holds ProductSummary
+ * objects, loaded with one query on the PRODUCT table on first use, and
+ * is then kept current incrementally:
+ * - created products are added with added();
+ * - stock changes made through StockReservationBean are applied with
+ *   adjustStockOnCommit() once their transaction commits;
+ * - products written in bulk, e.g. by a ProductImportService batch, are
+ *   read again with refresh().
+ * Changes made outside the application (e.g. directly in the database)
+ * need invalidate(), which reloads the catalog on next use; the
+ * dashboard offers it as "Reload".
+ *
+ * Model and brand are kept in a ProductTrigramIndex, so search() finds
+ * substrings without scanning the catalog or the database; suggest()
+ * answers typeahead prefixes from a ProductPrefixTrie. filter()
+ * answers faceted queries from a ProductFacetIndex and sorts and
+ * range-filters the result on ProductColumns, a primitive columnar copy
+ * of the catalog. The trie, facets and columns are built on first use;
+ * the trie and the columns are kept current when a product changes.
+ *
+ * Listeners added with addStockListener() are told the id of every
+ * product whose stock changed in a committed transaction or that was
+ * added or updated, e.g. for LowStockDetector.
+ *
+ * Readers get an immutable snapshot; a change replaces the snapshot, so
+ * readers never see a half-updated list. Stock numbers are updated in
+ * place on the cached summaries and may lag a concurrent reader briefly.
+ *
+ * The catalog is loaded by the first reader that finds it missing,
+ * outside the lock; concurrent readers wait for that load, while
+ * changes only take the lock to apply themselves and to install the
+ * loaded snapshot. The stock of hot products is taken from the
+ * HotStockLedger, as PRODUCT.stockNumber lags it.
+ *
+ * A committed stock change is applied only to a snapshot whose query
+ * finished before the transaction started to commit, as a later one
+ * may already have read the new stock. Loads and commits are ordered
+ * by a sequence counter; when a load overlaps the commit, or the
+ * commit happens while the catalog is loading, the stock of just that
+ * product is read again in the background.
+ */
+@Named(value = "productCatalog")
+@ApplicationScoped
+public class ProductCatalog implements Serializable {
+
+    /** Immutable view of the catalog */
+    private static final class Snapshot {
+        final List<ProductSummary> products;
+        final List<ProductSummary> laptops;
+        final List<ProductSummary> phones;
+        final Map<Integer, ProductSummary> byId;
+        final Map<Integer, Integer> positions;
+        final ProductTrigramIndex index;
+
+        /** Sequence number taken when the query of this catalog had returned */
+        final long loaded;
+
+        /** Facet bitsets over products, built on first facet query */
+        private ProductFacetIndex facets;
+
+        /** Columnar copy of products, built on first use */
+        private ProductColumns columns;
+
+        /** Prefix trie for suggestions, built on first use */
+        private ProductPrefixTrie prefixes;
+
+        Snapshot(List<ProductSummary> products, ProductTrigramIndex index, ProductColumns columns,
+                ProductPrefixTrie prefixes, long loaded) {
+            List<ProductSummary> laptopList = new ArrayList<>();
+            List<ProductSummary> phoneList = new ArrayList<>();
+            Map<Integer, ProductSummary> ids = new HashMap<>();
+            Map<Integer, Integer> pos = new HashMap<>();
+            for (ProductSummary p : products) {
+                pos.put(p.getId(), pos.size());
+                if (p.isLaptop()) {
+                    laptopList.add(p);
+                } else if (p.isPhone()) {
+                    phoneList.add(p);
+                }
+                ids.put(p.getId(), p);
+            }
+            this.products = Collections.unmodifiableList(new ArrayList<>(products));
+            this.laptops = Collections.unmodifiableList(laptopList);
+            this.phones = Collections.unmodifiableList(phoneList);
+            this.byId = ids;
+            this.positions = pos;
+            this.index = index;
+            this.columns = columns;
+            this.prefixes = prefixes;
+            this.loaded = loaded;
+        }
+
+        synchronized ProductFacetIndex facets() {
+            if (facets == null) {
+                facets = new ProductFacetIndex(products);
+            }
+            return facets;
+        }
+
+        synchronized ProductFacetIndex builtFacets() {
+            return facets;
+        }
+
+        synchronized ProductColumns columns() {
+            if (columns == null) {
+                columns = new ProductColumns(products);
+            }
+            return columns;
+        }
+
+        synchronized ProductColumns builtColumns() {
+            return columns;
+        }
+
+        synchronized ProductPrefixTrie prefixes() {
+            if (prefixes == null) {
+                prefixes = new ProductPrefixTrie(products);
+            }
+            return prefixes;
+        }
+
+        synchronized ProductPrefixTrie builtPrefixes() {
+            return prefixes;
+        }
+    }
+
+    /** EntityManager for loading the catalog */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** Registry used to apply stock changes once their transaction commits */
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    /** Container executor reading the stock of single products again */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Live stock of hot products */
+    @Inject
+    private HotStockLedger hotStock;
+
+    /** Listeners told about products whose stock or fields changed */
+    private final List<IntConsumer> stockListeners = new CopyOnWriteArrayList<>();
+
+    /** Current catalog, null when it must be (re)loaded */
+    private volatile Snapshot snapshot;
+
+    /** Load in progress, null if none; guarded by this */
+    private FutureTask<Snapshot> loading;
+
+    /**
+     * Products whose stock is read again instead of following the
+     * deltas, with whether a commit arrived during the read; guarded by this
+     */
+    private final Map<Integer, Boolean> rereads = new HashMap<>();
+
+    /** Reads answered from the loaded catalog */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Reads that had to load the catalog */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Number of times the catalog was invalidated */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /** Number of invalidations without known product ids */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /** Orders catalog loads against commits of stock changes */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Returns all products.
+     * @return unmodifiable list of all products
+     */
+    public List<ProductSummary> getProducts() {
+        return current().products;
+    }
+
+    /**
+     * Returns all laptops.
+     * @return unmodifiable list of all laptops
+     */
+    public List<ProductSummary> getLaptops() {
+        return current().laptops;
+    }
+
+    /**
+     * Returns all phones.
+     * @return unmodifiable list of all phones
+     */
+    public List<ProductSummary> getPhones() {
+        return current().phones;
+    }
+
+    /**
+     * Returns a product by id.
+     * @param productId id of the product
+     * @return the cached product, or null if there is none with that id
+     */
+    public ProductSummary getProduct(Integer productId) {
+        return current().byId.get(productId);
+    }
+
+    /**
+     * Returns the products whose model or brand contains the text,
+     * ignoring case. Texts of three or more characters are answered from
+     * the trigram index, shorter ones by scanning the cached catalog.
+     *
+     * @param text search text
+     * @return matching products, empty for a blank text
+     */
+    public List<ProductSummary> search(String text) {
+        Snapshot s = current();
+        String term = ProductTrigramIndex.normalize(text);
+        List<ProductSummary> result = new ArrayList<>();
+        if (term.isEmpty()) {
+            return result;
+        }
+        int[] ids = s.index.search(term);
+        if (ids == null) {
+            for (ProductSummary p : s.products) {
+                if (matches(p, term)) {
+                    result.add(p);
+                }
+            }
+        } else {
+            for (int id : ids) {
+                ProductSummary p = s.byId.get(id);
+                if (p != null && matches(p, term)) {
+                    result.add(p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Suggests products for a typed prefix of their model or brand, from
+     * the prefix trie, with the most stock first.
+     *
+     * @param prefix typed text, case-insensitive
+     * @param type "Laptop" or "Phone" to suggest only that type, null for all
+     * @param limit maximum number of suggestions
+     * @return the suggestions, empty for a blank prefix
+     */
+    public List<ProductSummary> suggest(String prefix, String type, int limit) {
+        Snapshot s = current();
+        List<ProductSummary> result = new ArrayList<>();
+        for (int id : s.prefixes().lookup(prefix, type)) {
+            ProductSummary p = s.byId.get(id);
+            if (p != null && (type == null || type.equalsIgnoreCase(p.getType()))) {
+                result.add(p);
+            }
+        }
+        // Current stock, which may have moved since the trie was built
+        result.sort(Comparator.comparingInt(ProductSummary::getStockNumber).reversed()
+                .thenComparing(ProductSummary::getModel, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Filters the catalog by facet values and counts the values of every
+     * facet within the result.
+     *
+     * @param selection selected values per facet
+     * @return matching products and facet counts
+     */
+    public ProductFacetIndex.Result filter(Map<ProductFacetIndex.Facet, Set<String>> selection) {
+        return current().facets().query(selection);
+    }
+
+    /**
+     * Filters the catalog by facet values and a price range and sorts the
+     * result. Facet counts do not take the price range into account.
+     *
+     * @param selection selected values per facet
+     * @param options sort order and price range
+     * @return matching products in the requested order and facet counts
+     */
+    public ProductFacetIndex.Result filter(Map<ProductFacetIndex.Facet, Set<String>> selection,
+            StockListOptions options) {
+        Snapshot s = current();
+        ProductFacetIndex.Result result = s.facets().query(selection);
+        ProductColumns columns = s.columns();
+        int[] positions = columns.filterPrice(result.positions(), options.getMinPrice(), options.getMaxPrice());
+        positions = columns.sort(positions, options.getSortKey(), options.isDescending());
+        List<ProductSummary> products = new ArrayList<>(positions.length);
+        for (int pos : positions) {
+            products.add(s.products.get(pos));
+        }
+        return result.withProducts(positions, Collections.unmodifiableList(products));
+    }
+
+    /**
+     * Adds a newly created product. Call after its transaction committed.
+     * @param product the persisted product
+     */
+    public synchronized void added(Product product) {
+        updated(product);
+    }
+
+    /**
+     * Adds or replaces a product whose fields changed, e.g. its model or
+     * price. Call after its transaction committed.
+     * @param product the persisted product
+     */
+    public synchronized void updated(Product product) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            loading = null;  // may have read the product before the change
+            notifyListeners(product.getId());
+            return;  // loaded with the product on next use
+        }
+        ProductSummary summary = summaryOf(product);
+        List<ProductSummary> products = new ArrayList<>(s.products);
+        Integer position = s.positions.get(summary.getId());
+        if (position == null) {
+            position = products.size();
+            products.add(summary);
+        } else {
+            products.set(position, summary);
+        }
+        s.index.add(summary);
+        ProductPrefixTrie prefixes = s.builtPrefixes();
+        if (prefixes != null) {
+            prefixes.add(summary);
+        }
+        ProductColumns columns = s.builtColumns();
+        snapshot = new Snapshot(products, s.index, columns == null ? null : columns.with(products, position),
+                prefixes, s.loaded);
+        notifyListeners(summary.getId());
+    }
+
+    /**
+     * Registers a listener for products whose stock or fields changed.
+     * Listeners run on the committing thread and must return quickly.
+     * @param listener receives the product id
+     */
+    public void addStockListener(IntConsumer listener) {
+        stockListeners.add(listener);
+    }
+
+    /**
+     * Changes the cached stock of a product when the caller's active
+     * transaction commits; nothing changes if it rolls back.
+     *
+     * @param productId id of the product
+     * @param delta change of the stock, negative for reservations
+     */
+    public void adjustStockOnCommit(int productId, int delta) {
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            /** Sequence number taken just before the commit */
+            private long committing;
+
+            @Override
+            public void beforeCompletion() {
+                committing = sequence.incrementAndGet();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    adjustStock(productId, delta, committing);
+                    notifyListeners(productId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the catalog; it is reloaded on next use.
+     * Any product may have changed, so this also starts a new epoch.
+     */
+    public synchronized void invalidate() {
+        drop();
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * Reads products written in bulk again with one query, puts them into
+     * the catalog and tells the listeners. Call after the transaction
+     * committed. Stock committed for them meanwhile is read again after.
+     * @param productIds ids of the inserted or updated products
+     */
+    public void refresh(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Set<Integer> marked = new HashSet<>();
+        boolean cached;
+        synchronized (this) {
+            cached = snapshot != null;
+            if (!cached) {
+                loading = null;  // may have read the products before the change
+            } else {
+                // Hold back their stock deltas until the read is in
+                for (Integer productId : productIds) {
+                    if (rereads.containsKey(productId)) {
+                        rereads.put(productId, Boolean.TRUE);
+                    } else {
+                        rereads.put(productId, Boolean.FALSE);
+                        marked.add(productId);
+                    }
+                }
+            }
+        }
+        List<ProductSummary> summaries;
+        try {
+            summaries = !cached ? List.of()
+                    : em.createQuery(ProductSummary.SELECT + " WHERE p.id IN :ids", ProductSummary.class)
+                            .setParameter("ids", productIds)
+                            .getResultList();
+        } catch (RuntimeException e) {
+            drop();
+            throw e;
+        }
+        synchronized (this) {
+            Snapshot s = snapshot;
+            if (s != null && !summaries.isEmpty()) {
+                List<ProductSummary> products = new ArrayList<>(s.products);
+                ProductPrefixTrie prefixes = s.builtPrefixes();
+                for (ProductSummary summary : summaries) {
+                    if (hotStock.isHot(summary.getId())) {
+                        summary.setStockNumber(hotStock.getAvailable(summary.getId()));
+                    }
+                    Integer position = s.positions.get(summary.getId());
+                    if (position == null) {
+                        products.add(summary);
+                    } else {
+                        products.set(position, summary);
+                    }
+                    s.index.add(summary);
+                    if (prefixes != null) {
+                        prefixes.add(summary);
+                    }
+                }
+                // Columns and facets are rebuilt on next use
+                snapshot = new Snapshot(products, s.index, null, prefixes, s.loaded);
+            }
+            for (Integer productId : marked) {
+                if (Boolean.TRUE.equals(rereads.remove(productId))) {
+                    reread(productId);
+                }
+            }
+        }
+        for (int productId : productIds) {
+            notifyListeners(productId);
+        }
+    }
+
+    private synchronized void drop() {
+        snapshot = null;
+        loading = null;
+        rereads.clear();
+        invalidations.incrementAndGet();
+    }
+
+    private void notifyListeners(int productId) {
+        for (IntConsumer listener : stockListeners) {
+            listener.accept(productId);
+        }
+    }
+
+    /**
+     * Applies a committed stock change to the snapshot. If the snapshot
+     * may already have seen the change, or is still loading, the stock
+     * of the product is read again instead.
+     * @param committing sequence number taken before the commit
+     */
+    private synchronized void adjustStock(int productId, int delta, long committing) {
+        Snapshot s = snapshot;
+        if (hotStock.isHot(productId)) {
+            if (s != null) {
+                setStock(s, productId, hotStock.getAvailable(productId));
+            }
+        } else if (s == null) {
+            if (loading != null) {
+                rereads.put(productId, Boolean.TRUE);  // read once the load is installed
+            }
+        } else if (rereads.containsKey(productId)) {
+            rereads.put(productId, Boolean.TRUE);
+        } else if (s.loaded > committing) {
+            reread(productId);
+        } else {
+            ProductSummary product = s.byId.get(productId);
+            if (product != null) {
+                setStock(s, productId, product.getStockNumber() + delta);
+            }
+        }
+    }
+
+    /** Changes the stock of a product in a snapshot; call holding the lock */
+    private void setStock(Snapshot s, int productId, int stock) {
+        ProductSummary product = s.byId.get(productId);
+        if (product == null) {
+            return;
+        }
+        product.setStockNumber(stock);
+        ProductFacetIndex facets = s.builtFacets();
+        if (facets != null) {
+            facets.setInStock(productId, stock > 0);
+        }
+        ProductColumns columns = s.builtColumns();
+        if (columns != null) {
+            columns.setStock(s.positions.get(productId), stock);
+        }
+    }
+
+    /** Starts reading the stock of a product again; call holding the lock */
+    private void reread(int productId) {
+        rereads.put(productId, Boolean.FALSE);
+        executor.submit(() -> readStock(productId));
+    }
+
+    /**
+     * Reads the stock of a product into the snapshot, again if another
+     * commit arrived during the read, so the last read sees every commit.
+     */
+    private void readStock(int productId) {
+        while (true) {
+            List<Integer> stock;
+            try {
+                stock = em.createQuery("SELECT p.stockNumber FROM Product p WHERE p.id = :id", Integer.class)
+                        .setParameter("id", productId)
+                        .getResultList();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (rereads.containsKey(productId)) {
+                        drop();  // reloaded on next use
+                    }
+                }
+                return;
+            }
+            synchronized (this) {
+                Boolean again = rereads.get(productId);
+                if (again == null) {
+                    return;  // dropped meanwhile
+                }
+                if (!again) {
+                    rereads.remove(productId);
+                    Snapshot s = snapshot;
+                    if (s != null && !stock.isEmpty()) {
+                        setStock(s, productId, stock.get(0));
+                    }
+                    return;
+                }
+                rereads.put(productId, Boolean.FALSE);
+            }
+        }
+    }
+
+    /**
+     * Returns the loaded catalog, loading it first if necessary. Only
+     * one reader loads; the others wait for its result.
+     */
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s != null) {
+            hits.incrementAndGet();
+            return s;
+        }
+        FutureTask<Snapshot> task;
+        boolean owner = false;
+        synchronized (this) {
+            if (snapshot != null) {
+                hits.incrementAndGet();
+                return snapshot;
+            }
+            if (loading == null) {
+                misses.incrementAndGet();
+                loading = new FutureTask<>(this::load);
+                owner = true;
+            }
+            task = loading;
+        }
+        if (owner) {
+            task.run();
+            install(task);
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException("Could not load the product catalog", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the product catalog", e);
+        }
+    }
+
+    /**
+     * Queries the catalog and builds its index; runs without the lock.
+     */
+    private Snapshot load() {
+        List<ProductSummary> products =
+                em.createQuery(ProductSummary.SELECT, ProductSummary.class).getResultList();
+        long loaded = sequence.incrementAndGet();
+        ProductTrigramIndex index = new ProductTrigramIndex();
+        for (ProductSummary p : products) {
+            if (hotStock.isHot(p.getId())) {
+                p.setStockNumber(hotStock.getAvailable(p.getId()));
+            }
+            index.add(p);
+        }
+        return new Snapshot(products, index, null, null, loaded);
+    }
+
+    /**
+     * Makes a finished load the current catalog, unless the catalog was
+     * dropped or changed while it loaded, and reads the stock of the
+     * products committed during the load again.
+     */
+    private synchronized void install(FutureTask<Snapshot> task) {
+        if (loading != task) {
+            return;
+        }
+        loading = null;
+        try {
+            snapshot = task.get();
+        } catch (ExecutionException e) {
+            rereads.clear();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rereads.clear();
+            return;
+        }
+        for (Integer productId : new ArrayList<>(rereads.keySet())) {
+            reread(productId);
+        }
+    }
+
+    /** Summary of a product, with the live stock if it is hot */
+    private ProductSummary summaryOf(Product product) {
+        ProductSummary summary = ProductSummary.of(product);
+        if (hotStock.isHot(summary.getId())) {
+            summary.setStockNumber(hotStock.getAvailable(summary.getId()));
+        }
+        return summary;
+    }
+
+    private static boolean matches(ProductSummary product, String term) {
+        return ProductTrigramIndex.normalize(product.getModel()).contains(term)
+                || ProductTrigramIndex.normalize(product.getBrand()).contains(term);
+    }
+
+    // --- Metrics ---
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Number of invalidations that did not name the changed products;
+     * whoever tracks products through the listeners must treat all of
+     * them as changed when this moves.
+     */
+    public long getEpoch() {
+        return epoch.get();
+    }
+
+    /** Number of cached products, 0 while not loaded */
+    public int getSize() {
+        Snapshot s = snapshot;
+        return s == null ? 0 : s.products.size();
+    }
+}
@@ -0,0 +1,238 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Columnar, primitive-typed copy of the catalog for sorting and range
+ * filtering.
+ *
+ * Position i of every array describes the product at position i of the
+ * catalog list (the same positions ProductFacetIndex uses). Numbers are
+ * kept in int[] / double[] columns and brand and operating system are
+ * dictionary-encoded: each distinct value is stored once and the column
+ * holds its code. Codes follow the alphabetical order of the values, so
+ * sorting by code sorts by name. Sorting and filtering therefore walk a
+ * few primitive arrays instead of object graphs with boxed and String
+ * fields, and allocate nothing but the resulting position array.
+ *
+ * Instances are immutable apart from the stock column, which the catalog
+ * updates in place when stock changes commit. with() derives the columns
+ * of a changed catalog by copying the arrays, without re-reading the
+ * products.
+ */
+public class ProductColumns implements Serializable {
+
+    /** Columns the stock lists can be sorted by */
+    public enum SortKey {
+        CATALOG("Catalog order"),
+        BRAND("Brand"),
+        PRICE("Price"),
+        STOCK("Stock"),
+        DISPLAY_SIZE("Display size"),
+        OPERATING_SYSTEM("Operating system");
+
+        private final String label;
+
+        SortKey(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final int size;
+    private final int[] id;
+    private final double[] price;
+    private final int[] stockNumber;
+    private final double[] displaySize;
+    private final int[] brand;
+    private final int[] operatingSystem;
+    private final String[] brandDictionary;
+    private final String[] osDictionary;
+
+    /**
+     * Builds the columns of a catalog list.
+     * @param products the catalog, in position order
+     */
+    public ProductColumns(List<ProductSummary> products) {
+        size = products.size();
+        id = new int[size];
+        price = new double[size];
+        stockNumber = new int[size];
+        displaySize = new double[size];
+        brand = new int[size];
+        operatingSystem = new int[size];
+
+        TreeSet<String> brands = new TreeSet<>();
+        TreeSet<String> systems = new TreeSet<>();
+        for (ProductSummary p : products) {
+            brands.add(key(p.getBrand()));
+            systems.add(key(p.getOperatingSystem()));
+        }
+        brandDictionary = brands.toArray(new String[0]);
+        osDictionary = systems.toArray(new String[0]);
+
+        for (int i = 0; i < size; i++) {
+            fill(i, products.get(i));
+        }
+    }
+
+    private ProductColumns(ProductColumns source, int newSize) {
+        size = newSize;
+        id = Arrays.copyOf(source.id, newSize);
+        price = Arrays.copyOf(source.price, newSize);
+        stockNumber = Arrays.copyOf(source.stockNumber, newSize);
+        displaySize = Arrays.copyOf(source.displaySize, newSize);
+        brand = Arrays.copyOf(source.brand, newSize);
+        operatingSystem = Arrays.copyOf(source.operatingSystem, newSize);
+        brandDictionary = source.brandDictionary;
+        osDictionary = source.osDictionary;
+    }
+
+    /**
+     * Returns the columns of the catalog with one product added or replaced.
+     * Falls back to a full rebuild if the product brings a new brand or
+     * operating system, since that shifts the dictionary codes.
+     *
+     * @param products the changed catalog
+     * @param position position of the added or replaced product
+     * @return columns of the changed catalog
+     */
+    public ProductColumns with(List<ProductSummary> products, int position) {
+        ProductSummary p = products.get(position);
+        if (Arrays.binarySearch(brandDictionary, key(p.getBrand())) < 0
+                || Arrays.binarySearch(osDictionary, key(p.getOperatingSystem())) < 0
+                || products.size() < size) {
+            return new ProductColumns(products);
+        }
+        ProductColumns copy = new ProductColumns(this, products.size());
+        copy.fill(position, p);
+        return copy;
+    }
+
+    /**
+     * Updates the stock column of a position.
+     * @param position catalog position of the product
+     * @param stock new stock number
+     */
+    public void setStock(int position, int stock) {
+        stockNumber[position] = stock;
+    }
+
+    /**
+     * Keeps the positions whose price lies in a range.
+     *
+     * @param positions catalog positions to filter
+     * @param minPrice lowest price, null for no lower bound
+     * @param maxPrice highest price, null for no upper bound
+     * @return the positions in range, in their original order
+     */
+    public int[] filterPrice(int[] positions, Double minPrice, Double maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return positions;
+        }
+        double min = minPrice == null ? Double.NEGATIVE_INFINITY : minPrice;
+        double max = maxPrice == null ? Double.POSITIVE_INFINITY : maxPrice;
+        int[] result = new int[positions.length];
+        int n = 0;
+        for (int pos : positions) {
+            double value = price[pos];
+            if (value >= min && value <= max) {
+                result[n++] = pos;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Sorts positions by a column; ties are ordered by catalog position.
+     *
+     * @param positions catalog positions, sorted in place
+     * @param key column to sort by
+     * @param descending whether to sort in descending order
+     * @return the sorted positions
+     */
+    public int[] sort(int[] positions, SortKey key, boolean descending) {
+        if (key == null || key == SortKey.CATALOG) {
+            if (descending) {
+                reverse(positions);
+            }
+            return positions;
+        }
+        // Sort long keys holding the (signed) column value in the high bits
+        // and the position in the low 32 bits: one primitive sort, ties by position
+        long[] keys = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int pos = positions[i];
+            long value;
+            switch (key) {
+                case BRAND:
+                    value = brand[pos];
+                    break;
+                case OPERATING_SYSTEM:
+                    value = operatingSystem[pos];
+                    break;
+                case STOCK:
+                    value = stockNumber[pos];
+                    break;
+                case PRICE:
+                    value = sortableCents(price[pos]);
+                    break;
+                default:
+                    value = sortableCents(displaySize[pos]);
+                    break;
+            }
+            keys[i] = (value << 32) | pos;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            positions[descending ? keys.length - 1 - i : i] = (int) keys[i];
+        }
+        return positions;
+    }
+
+    /** Number of products in the columns */
+    public int size() {
+        return size;
+    }
+
+    /** Id of the product at a position */
+    public int idAt(int position) {
+        return id[position];
+    }
+
+    private void fill(int i, ProductSummary p) {
+        id[i] = p.getId();
+        price[i] = p.getPrice();
+        stockNumber[i] = p.getStockNumber();
+        displaySize[i] = p.getDisplaySize();
+        brand[i] = Arrays.binarySearch(brandDictionary, key(p.getBrand()));
+        operatingSystem[i] = Arrays.binarySearch(osDictionary, key(p.getOperatingSystem()));
+    }
+
+    /**
+     * Maps a non-negative amount to an unsigned 31-bit sort key with
+     * cent precision; larger amounts share the top key.
+     */
+    private static long sortableCents(double value) {
+        long cents = Math.round(Math.max(0, value) * 100);
+        return Math.min(cents, Integer.MAX_VALUE);
+    }
+
+    private static void reverse(int[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.trim();
+    }
+}
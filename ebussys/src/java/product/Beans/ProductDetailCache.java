@@ -0,0 +1,277 @@
+package product.beans;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.ServletContext;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the products for conditional GETs of productDetails.xhtml,
+ * and a cache of the rendered pages.
+ *
+ * Every product change reported by the ProductCatalog listeners (stock,
+ * price and field changes, creation and bulk import) gives the product
+ * a new version and modification time. Products that did not change
+ * since the baseline share version 0 and the baseline time; the
+ * baseline is the startup time, and moves when the catalog is
+ * invalidated without naming the changed products. ETags include the
+ * baseline, so a restart never revives an old ETag.
+ *
+ * The page shows the price history of the last year, so versions also
+ * carry the current day, and a product's version is never older than
+ * midnight.
+ *
+ * A change evicts the product from the JPA shared cache before it gets
+ * its new version, so a page rendered for the new version never shows
+ * the entity as it was before the change; moving the baseline evicts
+ * all products.
+ *
+ * The rendered page of a product is cached together with its version,
+ * so a cached page is served only while the product is unchanged; a
+ * change also drops the page at once. Pages that show messages of the
+ * request are not cached (see UNCACHEABLE). The cache holds at most
+ * ebussys.productDetails.cacheSize pages (default 500, 0 disables it),
+ * least recently used first out.
+ */
+@Named(value = "productDetailCache")
+@ApplicationScoped
+public class ProductDetailCache implements Serializable {
+
+    /**
+     * Request attribute set by the page when the response must not be
+     * cached, e.g. because it shows messages of the request.
+     */
+    public static final String UNCACHEABLE = "ebussys.productDetails.uncacheable";
+
+    /** Version and modification time of a product */
+    public static class Stamp {
+        private final long version;
+        private final long modifiedAt;
+        private final long day;
+
+        Stamp(long version, long modifiedAt) {
+            this(version, modifiedAt, 0);
+        }
+
+        Stamp(long version, long modifiedAt, long day) {
+            this.version = version;
+            this.modifiedAt = modifiedAt;
+            this.day = day;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /** Day the version is valid on, as days since the epoch */
+        public long getDay() {
+            return day;
+        }
+
+        /** Modification time in milliseconds, whole seconds as in HTTP dates */
+        public long getModifiedAt() {
+            return modifiedAt;
+        }
+    }
+
+    /** A rendered page and the ETag of the product version it shows */
+    public static class Page {
+        private final String etag;
+        private final byte[] body;
+        private final String contentType;
+
+        public Page(String etag, byte[] body, String contentType) {
+            this.etag = etag;
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    /** Shared catalog reporting the product changes */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** EntityManager whose factory holds the shared cache of the products */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** Changed products since the baseline */
+    private final Map<Integer, Stamp> stamps = new ConcurrentHashMap<>();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile long baseline = seconds(System.currentTimeMillis());
+
+    private volatile long seenEpoch;
+
+    private volatile int maxPages = 500;
+
+    /** Cached pages by product id, least recently used first; guarded by itself */
+    private final Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > maxPages;
+        }
+    };
+
+    // --- Metrics ---
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong pageHits = new AtomicLong();
+    private final AtomicLong pageMisses = new AtomicLong();
+
+    /**
+     * Reads the cache size and starts following the catalog.
+     * @param context the servlet context of the application
+     */
+    public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
+        String size = context.getInitParameter("ebussys.productDetails.cacheSize");
+        if (size != null && !size.trim().isEmpty()) {
+            maxPages = Integer.parseInt(size.trim());
+        }
+        seenEpoch = catalog.getEpoch();
+        catalog.addStockListener(this::changed);
+    }
+
+    /**
+     * Returns the current version of a product.
+     * @param productId id of the product
+     * @return its version and modification time
+     */
+    public Stamp stamp(int productId) {
+        checkEpoch();
+        Stamp stamp = stamps.get(productId);
+        LocalDate today = LocalDate.now();
+        long midnight = today.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long modifiedAt = stamp == null ? baseline : stamp.getModifiedAt();
+        return new Stamp(stamp == null ? 0 : stamp.getVersion(), Math.max(modifiedAt, midnight),
+                today.toEpochDay());
+    }
+
+    /**
+     * Builds the weak ETag of a product version.
+     * @param productId id of the product
+     * @param stamp its version
+     * @return the ETag header value
+     */
+    public String etag(int productId, Stamp stamp) {
+        return "W/\"" + productId + '-' + baseline + '-' + stamp.getVersion() + '-' + stamp.getDay() + '"';
+    }
+
+    /**
+     * Returns the cached page of a product version.
+     * @param productId id of the product
+     * @param etag ETag of the current version
+     * @return the page, null if none is cached for that version
+     */
+    public Page getPage(int productId, String etag) {
+        if (maxPages <= 0) {
+            return null;
+        }
+        Page page;
+        synchronized (pages) {
+            page = pages.get(productId);
+        }
+        if (page == null || !page.etag.equals(etag)) {
+            pageMisses.incrementAndGet();
+            return null;
+        }
+        pageHits.incrementAndGet();
+        return page;
+    }
+
+    /**
+     * Caches the rendered page of a product, unless the product changed
+     * while it was rendered.
+     * @param productId id of the product
+     * @param page the page, with the ETag of the version it was rendered for
+     */
+    public void putPage(int productId, Page page) {
+        if (maxPages <= 0 || !etag(productId, stamp(productId)).equals(page.etag)) {
+            return;
+        }
+        synchronized (pages) {
+            pages.put(productId, page);
+        }
+    }
+
+    /** Whether rendered pages are cached */
+    public boolean isPageCacheEnabled() {
+        return maxPages > 0;
+    }
+
+    /** Counts a request answered with 304 Not Modified */
+    public void countNotModified() {
+        notModified.incrementAndGet();
+    }
+
+    private void changed(int productId) {
+        Cache shared = em.getEntityManagerFactory().getCache();
+        shared.evict(Product.class, productId);
+        shared.evict(Laptop.class, productId);
+        shared.evict(Phone.class, productId);
+        stamps.put(productId, new Stamp(versions.incrementAndGet(), seconds(System.currentTimeMillis())));
+        synchronized (pages) {
+            pages.remove(productId);
+        }
+    }
+
+    /**
+     * Starts a new baseline if the catalog was invalidated without naming
+     * the changed products.
+     */
+    private void checkEpoch() {
+        long epoch = catalog.getEpoch();
+        if (epoch != seenEpoch) {
+            synchronized (this) {
+                if (epoch != seenEpoch) {
+                    em.getEntityManagerFactory().getCache().evict(Product.class);
+                    stamps.clear();
+                    synchronized (pages) {
+                        pages.clear();
+                    }
+                    baseline = Math.max(seconds(System.currentTimeMillis()), baseline + 1000);
+                    seenEpoch = epoch;
+                }
+            }
+        }
+    }
+
+    private static long seconds(long millis) {
+        return millis / 1000 * 1000;
+    }
+
+    // --- Metrics getters ---
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getPageHits() {
+        return pageHits.get();
+    }
+
+    public long getPageMisses() {
+        return pageMisses.get();
+    }
+}
@@ -0,0 +1,124 @@
+package product.beans;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.faces.context.FacesContext;
+import jakarta.faces.event.ComponentSystemEvent;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Backing bean of productDetails.xhtml?id=...
+ *
+ * Loads the full product entity, with its subtype fields, and its price
+ * history of the last year, counted in whole days so the page stays the
+ * same all day. Most requests for an unchanged product are answered by
+ * ProductDetailsFilter without reaching this bean.
+ */
+@Named(value = "productDetailsBean")
+@RequestScoped
+public class ProductDetailsBean implements Serializable {
+
+    /** Price history shown on the page, in days */
+    private static final long HISTORY_DAYS = 365;
+
+    /** EntityManager for JPA operations */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** Shared catalog, whose stock follows reservations of hot products too */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** Price history of the product */
+    @Inject
+    private PriceHistoryService priceHistory;
+
+    /** Id of the product, from the id request parameter */
+    private Integer id;
+
+    /** The product, loaded on first use */
+    private Product product;
+
+    private List<PricePoint> prices;
+
+    /**
+     * Reads the product id from the request.
+     */
+    @PostConstruct
+    public void init() {
+        String param = FacesContext.getCurrentInstance().getExternalContext()
+                .getRequestParameterMap().get("id");
+        try {
+            id = param == null ? null : Integer.valueOf(param.trim());
+        } catch (NumberFormatException e) {
+            id = null;
+        }
+    }
+
+    /**
+     * Returns the product of the id parameter.
+     * @return the product, null if there is none with that id
+     */
+    public Product getProduct() {
+        if (product == null && id != null) {
+            product = em.find(Product.class, id);
+        }
+        return product;
+    }
+
+    /** The product if it is a laptop, otherwise null */
+    public Laptop getLaptop() {
+        return getProduct() instanceof Laptop ? (Laptop) product : null;
+    }
+
+    /** The product if it is a phone, otherwise null */
+    public Phone getPhone() {
+        return getProduct() instanceof Phone ? (Phone) product : null;
+    }
+
+    /** Current stock of the product */
+    public int getStock() {
+        ProductSummary summary = catalog.getProduct(id);
+        return summary != null ? summary.getStockNumber() : getProduct().getStockNumber();
+    }
+
+    /**
+     * Returns the price changes since midnight a year ago, oldest first.
+     * @return the price points, empty if the product does not exist
+     */
+    public List<PricePoint> getPriceHistory() {
+        if (prices == null && getProduct() != null) {
+            Date from = Date.from(LocalDate.now().minusDays(HISTORY_DAYS)
+                    .atStartOfDay(ZoneId.systemDefault()).toInstant());
+            prices = priceHistory.history(id, from, new Date());
+        }
+        return prices == null ? List.of() : prices;
+    }
+
+    /**
+     * Keeps the page out of the rendered-page cache when it shows
+     * messages of this request.
+     * @param event the preRenderView event
+     */
+    public void checkMessages(ComponentSystemEvent event) {
+        FacesContext context = FacesContext.getCurrentInstance();
+        if (!context.getMessageList().isEmpty()) {
+            context.getExternalContext().getRequestMap().put(ProductDetailCache.UNCACHEABLE, Boolean.TRUE);
+        }
+    }
+
+    // --- Getters and setters ---
+
+    public Integer getId() {
+        return id;
+    }
+}
@@ -0,0 +1,291 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bitset indexes for faceted filtering of the product catalog.
+ *
+ * Each product has a fixed position in the catalog list. For every value
+ * of every facet (e.g. brand "Dell", price "$500 - $999") the index keeps
+ * a BitSet with the positions of the products having that value. Numeric
+ * attributes are grouped into fixed ranges.
+ *
+ * A query ORs the selected values within a facet and ANDs the facets.
+ * The count of a facet value is the size of its bitset ANDed with the
+ * filter of all other facets, so a count tells how many products the
+ * result would have if that value were selected as well. All of this is
+ * word-wise bit arithmetic and needs no database access.
+ *
+ * Thread-safe: queries and stock updates synchronize on the index.
+ */
+public class ProductFacetIndex implements Serializable {
+
+    /** Facets products can be filtered by */
+    public enum Facet {
+        TYPE("Type"),
+        BRAND("Brand"),
+        OPERATING_SYSTEM("Operating System"),
+        PRICE("Price"),
+        DISPLAY_SIZE("Display Size"),
+        WEIGHT("Weight"),
+        STOCK("Availability");
+
+        private final String label;
+
+        Facet(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final String IN_STOCK = "In stock";
+    public static final String OUT_OF_STOCK = "Out of stock";
+
+    private static final double[] PRICE_BOUNDS = {500, 1000, 1500, 2000};
+    private static final String[] PRICE_BUCKETS =
+            {"Under $500", "$500 - $999", "$1,000 - $1,499", "$1,500 - $1,999", "$2,000 and over"};
+
+    private static final double[] DISPLAY_BOUNDS = {6, 7, 13, 15};
+    private static final String[] DISPLAY_BUCKETS =
+            {"Under 6\"", "6\" - 6.9\"", "7\" - 12.9\"", "13\" - 14.9\"", "15\" and over"};
+
+    private static final double[] WEIGHT_BOUNDS = {200, 500, 1500, 2500};
+    private static final String[] WEIGHT_BUCKETS =
+            {"Under 200 g", "200 - 499 g", "500 - 1,499 g", "1,500 - 2,499 g", "2,500 g and over"};
+
+    /** Number of products a facet value matches */
+    public static class FacetCount implements Serializable {
+        private final Facet facet;
+        private final String value;
+        private final int count;
+        private final boolean selected;
+
+        FacetCount(Facet facet, String value, int count, boolean selected) {
+            this.facet = facet;
+            this.value = value;
+            this.count = count;
+            this.selected = selected;
+        }
+
+        public Facet getFacet() {
+            return facet;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isSelected() {
+            return selected;
+        }
+    }
+
+    /** The values of one facet with their counts */
+    public static class FacetGroup implements Serializable {
+        private final Facet facet;
+        private final List<FacetCount> values;
+
+        FacetGroup(Facet facet, List<FacetCount> values) {
+            this.facet = facet;
+            this.values = values;
+        }
+
+        public Facet getFacet() {
+            return facet;
+        }
+
+        public String getLabel() {
+            return facet.getLabel();
+        }
+
+        public List<FacetCount> getValues() {
+            return values;
+        }
+    }
+
+    /** Matching products and the facet counts of a query */
+    public static class Result implements Serializable {
+        private final int[] positions;
+        private final List<ProductSummary> products;
+        private final List<FacetGroup> groups;
+
+        Result(int[] positions, List<ProductSummary> products, List<FacetGroup> groups) {
+            this.positions = positions;
+            this.products = products;
+            this.groups = groups;
+        }
+
+        /** Catalog positions of the matching products, in result order */
+        int[] positions() {
+            return positions;
+        }
+
+        /** Same facet counts with the products filtered or reordered */
+        Result withProducts(int[] newPositions, List<ProductSummary> newProducts) {
+            return new Result(newPositions, newProducts, groups);
+        }
+
+        public List<ProductSummary> getProducts() {
+            return products;
+        }
+
+        /** Facet groups, without the TYPE facet */
+        public List<FacetGroup> getGroups() {
+            return groups;
+        }
+    }
+
+    /** Products by position */
+    private final List<ProductSummary> products;
+
+    /** Position of each product id */
+    private final Map<Integer, Integer> positions = new HashMap<>();
+
+    /** Per facet, the bitset of every value */
+    private final Map<Facet, Map<String, BitSet>> bits = new EnumMap<>(Facet.class);
+
+    /**
+     * Builds the index over a product list; positions are list indexes.
+     * @param products the catalog, must not change afterwards
+     */
+    public ProductFacetIndex(List<ProductSummary> products) {
+        this.products = products;
+        bits.put(Facet.TYPE, new TreeMap<>());
+        bits.put(Facet.BRAND, new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+        bits.put(Facet.OPERATING_SYSTEM, new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+        bits.put(Facet.PRICE, buckets(PRICE_BUCKETS));
+        bits.put(Facet.DISPLAY_SIZE, buckets(DISPLAY_BUCKETS));
+        bits.put(Facet.WEIGHT, buckets(WEIGHT_BUCKETS));
+        bits.put(Facet.STOCK, buckets(new String[] {IN_STOCK, OUT_OF_STOCK}));
+
+        for (int pos = 0; pos < products.size(); pos++) {
+            ProductSummary p = products.get(pos);
+            positions.put(p.getId(), pos);
+            set(Facet.TYPE, label(p.getType()), pos);
+            set(Facet.BRAND, label(p.getBrand()), pos);
+            set(Facet.OPERATING_SYSTEM, label(p.getOperatingSystem()), pos);
+            set(Facet.PRICE, PRICE_BUCKETS[bucket(p.getPrice(), PRICE_BOUNDS)], pos);
+            set(Facet.DISPLAY_SIZE, DISPLAY_BUCKETS[bucket(p.getDisplaySize(), DISPLAY_BOUNDS)], pos);
+            set(Facet.WEIGHT, WEIGHT_BUCKETS[bucket(p.getWeight(), WEIGHT_BOUNDS)], pos);
+            set(Facet.STOCK, p.getStockNumber() > 0 ? IN_STOCK : OUT_OF_STOCK, pos);
+        }
+    }
+
+    /**
+     * Filters the products and counts the facet values.
+     *
+     * @param selection selected values per facet; facets without values do not filter
+     * @return the matching products in catalog order and the facet counts
+     */
+    public synchronized Result query(Map<Facet, Set<String>> selection) {
+        Map<Facet, BitSet> masks = new EnumMap<>(Facet.class);
+        for (Map.Entry<Facet, Set<String>> entry : selection.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            BitSet mask = new BitSet(products.size());
+            Map<String, BitSet> values = bits.get(entry.getKey());
+            for (String value : entry.getValue()) {
+                BitSet b = values.get(value);
+                if (b != null) {
+                    mask.or(b);
+                }
+            }
+            masks.put(entry.getKey(), mask);
+        }
+
+        List<FacetGroup> groups = new ArrayList<>();
+        for (Facet facet : Facet.values()) {
+            if (facet == Facet.TYPE) {
+                continue;
+            }
+            BitSet others = filter(masks, facet);
+            Set<String> selected = selection.get(facet);
+            List<FacetCount> counts = new ArrayList<>();
+            for (Map.Entry<String, BitSet> value : bits.get(facet).entrySet()) {
+                BitSet b = (BitSet) value.getValue().clone();
+                b.and(others);
+                int count = b.cardinality();
+                boolean isSelected = selected != null && selected.contains(value.getKey());
+                if (count > 0 || isSelected) {
+                    counts.add(new FacetCount(facet, value.getKey(), count, isSelected));
+                }
+            }
+            groups.add(new FacetGroup(facet, counts));
+        }
+
+        BitSet all = filter(masks, null);
+        int[] positions = all.stream().toArray();
+        List<ProductSummary> matches = new ArrayList<>(positions.length);
+        for (int pos : positions) {
+            matches.add(products.get(pos));
+        }
+        return new Result(positions, Collections.unmodifiableList(matches), groups);
+    }
+
+    /**
+     * Moves a product between the in-stock and out-of-stock values.
+     * @param productId id of the product
+     * @param inStock whether the product now has stock
+     */
+    public synchronized void setInStock(int productId, boolean inStock) {
+        Integer pos = positions.get(productId);
+        if (pos != null) {
+            bits.get(Facet.STOCK).get(IN_STOCK).set(pos, inStock);
+            bits.get(Facet.STOCK).get(OUT_OF_STOCK).set(pos, !inStock);
+        }
+    }
+
+    /** ANDs the masks of all facets except the given one */
+    private BitSet filter(Map<Facet, BitSet> masks, Facet except) {
+        BitSet result = new BitSet(products.size());
+        result.set(0, products.size());
+        for (Map.Entry<Facet, BitSet> mask : masks.entrySet()) {
+            if (mask.getKey() != except) {
+                result.and(mask.getValue());
+            }
+        }
+        return result;
+    }
+
+    private void set(Facet facet, String value, int pos) {
+        bits.get(facet).computeIfAbsent(value, k -> new BitSet()).set(pos);
+    }
+
+    private static Map<String, BitSet> buckets(String[] labels) {
+        Map<String, BitSet> map = new LinkedHashMap<>();
+        for (String label : labels) {
+            map.put(label, new BitSet());
+        }
+        return map;
+    }
+
+    private static int bucket(double value, double[] bounds) {
+        int i = 0;
+        while (i < bounds.length && value >= bounds[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String label(String value) {
+        return value == null || value.trim().isEmpty() ? "(none)" : value.trim();
+    }
+}
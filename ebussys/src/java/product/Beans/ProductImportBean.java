@@ -0,0 +1,83 @@
+package product.beans;
+
+import jakarta.enterprise.context.SessionScoped;
+import jakarta.faces.application.FacesMessage;
+import jakarta.faces.context.FacesContext;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+import java.io.Serializable;
+
+/**
+ * Backing bean of the bulk product import page.
+ * Starts an import of a file on the server and shows its progress.
+ */
+@Named(value = "productImportBean")
+@SessionScoped
+public class ProductImportBean implements Serializable {
+
+    /** Path of the file to import on the server */
+    private String path;
+
+    /** Input format of the file */
+    private FeedReader.Format format = FeedReader.Format.CSV;
+
+    /** Products written per batch */
+    private int batchSize = ProductImportService.DEFAULT_BATCH_SIZE;
+
+    /** Service performing the import */
+    @Inject
+    private ProductImportService productImport;
+
+    /**
+     * Starts the import in the background.
+     * @return navigation outcome
+     */
+    public String startImport() {
+        try {
+            productImport.startImport(path, format, batchSize);
+            FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage(FacesMessage.SEVERITY_INFO, "Import started", null));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            FacesContext.getCurrentInstance().addMessage(null,
+                    new FacesMessage(FacesMessage.SEVERITY_ERROR, e.getMessage(), null));
+        }
+        return null;
+    }
+
+    /** Progress of the running or last import, null if none */
+    public ProductImportService.ImportResult getResult() {
+        return productImport.getLastImport();
+    }
+
+    /** Formats offered on the page */
+    public FeedReader.Format[] getFormats() {
+        return FeedReader.Format.values();
+    }
+
+    // --- Getters and setters ---
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public FeedReader.Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(FeedReader.Format format) {
+        this.format = format;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,594 @@
+package product.beans;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.UserTransaction;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming bulk import of laptops and phones from supplier feeds.
+ *
+ * The input is read one record at a time through a FeedReader, either
+ * CSV with a header row or JSON Lines. Recognised fields: type (Laptop
+ * or Phone), brand and model, and optionally displaySize, weight,
+ * operatingSystem, camera, wifi, price, description and stockNumber;
+ * laptops also take networkInterface, hardDrive and ports, phones
+ * cellular, location and simCard.
+ *
+ * Products are upserted by brand and model: an existing product gets
+ * the fields present in the record and keeps the others, a new one is
+ * inserted. Records are collected into batches of batchSize and each
+ * batch runs in one transaction: one query finds the existing products,
+ * then PRODUCT and the LAPTOP and PHONE tables are written with JDBC
+ * batch statements. New PRODUCT rows are inserted first, in one batch,
+ * and their generated ids are used for the subtype rows.
+ *
+ * Imported prices are recorded by PriceHistoryService in the same
+ * transaction. The stock of hot products is kept by HotStockLedger, so
+ * the import does not overwrite it. After each batch commits, the ProductCatalog
+ * reads the changed products again and tells its listeners.
+ */
+@Named(value = "productImport")
+@ApplicationScoped
+public class ProductImportService implements Serializable {
+
+    private static final Logger LOG = Logger.getLogger(ProductImportService.class.getName());
+
+    /** Default number of products per batch */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Maximum number of rejected rows kept for the report */
+    private static final int MAX_REJECTION_SAMPLES = 100;
+
+    private static final String INSERT_PRODUCT =
+            "INSERT INTO PRODUCT (DTYPE, BRAND, MODEL, DISPLAYSIZE, WEIGHT, OPERATINGSYSTEM, CAMERA, WIFI, "
+            + "PRICE, DESCRIPTION, STOCKNUMBER) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_PRODUCT =
+            "UPDATE PRODUCT SET DISPLAYSIZE = COALESCE(?, DISPLAYSIZE), WEIGHT = COALESCE(?, WEIGHT), "
+            + "OPERATINGSYSTEM = COALESCE(?, OPERATINGSYSTEM), CAMERA = COALESCE(?, CAMERA), "
+            + "WIFI = COALESCE(?, WIFI), PRICE = COALESCE(?, PRICE), "
+            + "DESCRIPTION = COALESCE(?, DESCRIPTION), STOCKNUMBER = COALESCE(?, STOCKNUMBER) "
+            + "WHERE ID = ?";
+
+    /** Product types the import accepts, with their subtype table and columns */
+    private enum ProductType {
+        LAPTOP("Laptop", "LAPTOP", "networkInterface", "hardDrive", "ports"),
+        PHONE("Phone", "PHONE", "cellular", "location", "simCard");
+
+        /** Entity name, stored in DTYPE */
+        final String entityName;
+        final String insertSql;
+        final String updateSql;
+        final String[] fields;
+
+        ProductType(String entityName, String table, String... fields) {
+            this.entityName = entityName;
+            this.fields = fields;
+            String[] columns = new String[fields.length];
+            String[] sets = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                columns[i] = fields[i].toUpperCase();
+                sets[i] = columns[i] + " = COALESCE(?, " + columns[i] + ")";
+            }
+            this.insertSql = "INSERT INTO " + table + " (id, " + String.join(", ", columns)
+                    + ") VALUES (?" + ", ?".repeat(fields.length) + ")";
+            this.updateSql = "UPDATE " + table + " SET " + String.join(", ", sets) + " WHERE id = ?";
+        }
+
+        static ProductType of(String name) {
+            for (ProductType type : values()) {
+                if (type.entityName.equalsIgnoreCase(name)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown type: " + name);
+        }
+    }
+
+    /**
+     * Progress and outcome of an import.
+     * Counters are updated while the import runs.
+     */
+    public static class ImportResult implements Serializable {
+
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long finishedAt;
+        private volatile long rowsRead;
+        private volatile long inserted;
+        private volatile long updated;
+        private volatile long rejected;
+        private volatile String error;
+        private final List<String> rejections = Collections.synchronizedList(new ArrayList<>());
+
+        void reject(long lineNo, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_REJECTION_SAMPLES) {
+                rejections.add("Line " + lineNo + ": " + reason);
+            }
+        }
+
+        public boolean isRunning() {
+            return finishedAt == 0;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** First rejected rows with their reasons */
+        public List<String> getRejections() {
+            synchronized (rejections) {
+                return new ArrayList<>(rejections);
+            }
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /** Elapsed time in seconds, up to now while running */
+        public double getElapsedSeconds() {
+            long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+            return (end - startedAt) / 1000.0;
+        }
+
+        /** Rows read per second */
+        public double getRowsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : rowsRead / seconds;
+        }
+    }
+
+    /** A parsed input record; null fields are not in the record */
+    private static class ImportRow {
+        long lineNo;
+        ProductType type;
+        String brand;
+        String model;
+        Double displaySize;
+        Integer weight;
+        String operatingSystem;
+        String camera;
+        String wifi;
+        Double price;
+        String description;
+        Integer stockNumber;
+        String[] details;
+        /** Id of the existing product, null for a new one */
+        Integer id;
+    }
+
+    /** EntityManager whose shared cache is cleared of the updated products */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** UserTransaction for the batch transactions */
+    @Resource
+    private UserTransaction utx;
+
+    /** DataSource for the JDBC batches; joins the JTA transaction */
+    @Resource(lookup = "java:app/jdbc/EBUSSYSDS")
+    private DataSource dataSource;
+
+    /** Container executor running background imports */
+    @Resource
+    private ManagedExecutorService executor;
+
+    /** Ledger holding the stock of hot products */
+    @Inject
+    private HotStockLedger hotStock;
+
+    /** Records the imported prices in the same transaction */
+    @Inject
+    private PriceHistoryService priceHistory;
+
+    /** Shared catalog, refreshed after each batch */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** The running or last background import */
+    private volatile ImportResult lastImport;
+
+    /**
+     * Returns the running or last background import.
+     * @return import progress, null if none was started
+     */
+    public ImportResult getLastImport() {
+        return lastImport;
+    }
+
+    /**
+     * Starts importing a file on the server in the background.
+     *
+     * @param path path of the file on the server
+     * @param format input format
+     * @param batchSize products per batch
+     * @return progress of the started import
+     * @throws IllegalArgumentException if the file cannot be read
+     * @throws IllegalStateException if an import is already running
+     */
+    public synchronized ImportResult startImport(String path, FeedReader.Format format, int batchSize) {
+        if (lastImport != null && lastImport.isRunning()) {
+            throw new IllegalStateException("An import is already running");
+        }
+        Path file = Paths.get(path);
+        if (!Files.isReadable(file)) {
+            throw new IllegalArgumentException("Cannot read file: " + path);
+        }
+        ImportResult result = new ImportResult();
+        lastImport = result;
+        executor.submit(() -> {
+            try (InputStream in = Files.newInputStream(file)) {
+                importProducts(in, format, batchSize, result);
+            } catch (IOException e) {
+                result.error = e.getMessage();
+                result.finishedAt = System.currentTimeMillis();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Imports products from a stream on the calling thread.
+     *
+     * @param in input, read to the end but not closed
+     * @param format input format
+     * @param batchSize products per batch
+     * @return outcome of the import
+     */
+    public ImportResult importProducts(InputStream in, FeedReader.Format format, int batchSize) {
+        ImportResult result = new ImportResult();
+        importProducts(in, format, batchSize, result);
+        return result;
+    }
+
+    /**
+     * Reads, parses and writes the records of the input batch by batch.
+     * Within a batch, a later record for the same brand and model
+     * replaces an earlier one.
+     */
+    private void importProducts(InputStream in, FeedReader.Format format, int batchSize, ImportResult result) {
+        int size = batchSize <= 0 ? DEFAULT_BATCH_SIZE : batchSize;
+        try {
+            FeedReader reader = new FeedReader(in, format);
+            Map<String, ImportRow> batch = new LinkedHashMap<>();
+            while (true) {
+                try {
+                    Map<String, String> fields = reader.next();
+                    if (fields == null) {
+                        break;
+                    }
+                    result.rowsRead++;
+                    ImportRow row = parse(fields, reader.getLineNumber());
+                    ImportRow replaced = batch.put(key(row.brand, row.model), row);
+                    if (replaced != null) {
+                        result.reject(replaced.lineNo, "Replaced by line " + row.lineNo);
+                    }
+                } catch (IllegalArgumentException e) {
+                    result.rowsRead++;
+                    result.reject(reader.getLineNumber(), e.getMessage());
+                }
+                if (batch.size() >= size) {
+                    writeBatch(new ArrayList<>(batch.values()), result);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(new ArrayList<>(batch.values()), result);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Product import failed", e);
+            result.error = e.getMessage();
+        } finally {
+            result.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Turns the fields of one record into an import row.
+     * @throws IllegalArgumentException if the record is invalid
+     */
+    private static ImportRow parse(Map<String, String> fields, long lineNo) {
+        ImportRow row = new ImportRow();
+        row.lineNo = lineNo;
+        row.type = ProductType.of(FeedReader.required(fields, "type"));
+        row.brand = FeedReader.required(fields, "brand");
+        row.model = FeedReader.required(fields, "model");
+        row.operatingSystem = fields.get("operatingSystem");
+        row.camera = fields.get("camera");
+        row.wifi = fields.get("wifi");
+        row.description = fields.get("description");
+        try {
+            row.displaySize = fields.get("displaySize") == null ? null : Double.valueOf(fields.get("displaySize"));
+            row.weight = fields.get("weight") == null ? null : Integer.valueOf(fields.get("weight"));
+            row.price = fields.get("price") == null ? null : Double.valueOf(fields.get("price"));
+            row.stockNumber = fields.get("stockNumber") == null ? null : Integer.valueOf(fields.get("stockNumber"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+        if (row.price != null && row.price < 0) {
+            throw new IllegalArgumentException("Price cannot be negative");
+        }
+        if (row.stockNumber != null && row.stockNumber < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        row.details = new String[row.type.fields.length];
+        for (int i = 0; i < row.details.length; i++) {
+            row.details[i] = fields.get(row.type.fields[i]);
+        }
+        return row;
+    }
+
+    /**
+     * Writes one batch in a single transaction: looks up the existing
+     * products, updates them, then inserts the new ones.
+     */
+    private void writeBatch(List<ImportRow> batch, ImportResult result) {
+        List<ImportRow> updates = new ArrayList<>();
+        List<ImportRow> inserts = new ArrayList<>();
+        List<ImportRow> rejected = new ArrayList<>();
+        List<Integer> changed = new ArrayList<>(batch.size());
+        try {
+            utx.begin();
+            try (Connection con = dataSource.getConnection()) {
+                Map<String, Object[]> existing = findExisting(con, batch);
+                for (ImportRow row : batch) {
+                    Object[] match = existing.get(key(row.brand, row.model));
+                    if (match == null) {
+                        inserts.add(row);
+                    } else if (!row.type.entityName.equals(match[1])) {
+                        rejected.add(row);
+                    } else {
+                        row.id = (Integer) match[0];
+                        updates.add(row);
+                    }
+                }
+                updateProducts(con, updates);
+                insertProducts(con, inserts);
+            }
+            Map<Integer, Double> prices = new HashMap<>();
+            for (ImportRow row : updates) {
+                if (row.price != null) {
+                    prices.put(row.id, row.price);
+                }
+            }
+            for (ImportRow row : inserts) {
+                prices.put(row.id, row.price);
+            }
+            priceHistory.recordAll(prices);
+            utx.commit();
+        } catch (Exception e) {
+            try {
+                if (utx.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                    utx.rollback();
+                }
+            } catch (Exception ex) {
+                // Log rollback error if needed
+            }
+            LOG.log(Level.WARNING, "Product import batch failed", e);
+            for (ImportRow row : batch) {
+                result.reject(row.lineNo, "Batch failed: " + e.getMessage());
+            }
+            return;
+        }
+
+        result.updated += updates.size();
+        result.inserted += inserts.size();
+        for (ImportRow row : rejected) {
+            result.reject(row.lineNo, row.brand + " " + row.model + " exists with another type");
+        }
+        // The rows were changed behind JPA's back; drop the cached entities
+        // before the catalog tells listeners (e.g. the page cache) to re-read them
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (ImportRow row : updates) {
+            changed.add(row.id);
+            cache.evict(Product.class, row.id);
+            cache.evict(row.type == ProductType.LAPTOP ? Laptop.class : Phone.class, row.id);
+        }
+        for (ImportRow row : inserts) {
+            changed.add(row.id);
+        }
+        catalog.refresh(changed);
+    }
+
+    /**
+     * Finds the products of the batch that already exist, with one query
+     * served by the (brand, model) index.
+     *
+     * @return id and DTYPE by brand and model
+     */
+    private static Map<String, Object[]> findExisting(Connection con, List<ImportRow> batch)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ID, DTYPE, BRAND, MODEL FROM PRODUCT WHERE (BRAND, MODEL) IN (");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        sql.append(')');
+        Map<String, Object[]> existing = new HashMap<>();
+        try (PreparedStatement ps = con.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (ImportRow row : batch) {
+                ps.setString(p++, row.brand);
+                ps.setString(p++, row.model);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    existing.putIfAbsent(key(rs.getString(3), rs.getString(4)),
+                            new Object[] {rs.getInt(1), rs.getString(2)});
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Key of a product for the upsert; case-insensitive like the
+     * default MySQL collation used by the lookup.
+     */
+    private static String key(String brand, String model) {
+        return (brand + '\u0000' + model).toLowerCase(Locale.ROOT);
+    }
+
+    private void updateProducts(Connection con, List<ImportRow> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = con.prepareStatement(UPDATE_PRODUCT)) {
+            for (ImportRow row : rows) {
+                setProductFields(ps, 1, row);
+                // The ledger owns the stock of hot products
+                setInt(ps, 8, hotStock.isHot(row.id) ? null : row.stockNumber);
+                ps.setInt(9, row.id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        for (ProductType type : ProductType.values()) {
+            try (PreparedStatement ps = con.prepareStatement(type.updateSql)) {
+                int count = 0;
+                for (ImportRow row : rows) {
+                    if (row.type == type) {
+                        int p = 1;
+                        for (String detail : row.details) {
+                            ps.setString(p++, detail);
+                        }
+                        ps.setInt(p, row.id);
+                        ps.addBatch();
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    ps.executeBatch();
+                }
+            }
+        }
+    }
+
+    private static void insertProducts(Connection con, List<ImportRow> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = con.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS)) {
+            for (ImportRow row : rows) {
+                ps.setString(1, row.type.entityName);
+                ps.setString(2, row.brand);
+                ps.setString(3, row.model);
+                // Columns of primitive fields are NOT NULL
+                if (row.displaySize == null) {
+                    row.displaySize = 0.0;
+                }
+                if (row.weight == null) {
+                    row.weight = 0;
+                }
+                if (row.price == null) {
+                    row.price = 0.0;
+                }
+                setProductFields(ps, 4, row);
+                ps.setInt(11, row.stockNumber == null ? 0 : row.stockNumber);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            // Keys come back in the order the rows were added
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (ImportRow row : rows) {
+                    if (!keys.next()) {
+                        throw new SQLException("Missing generated key for " + row.brand + " " + row.model);
+                    }
+                    row.id = keys.getInt(1);
+                }
+            }
+        }
+        for (ProductType type : ProductType.values()) {
+            try (PreparedStatement ps = con.prepareStatement(type.insertSql)) {
+                int count = 0;
+                for (ImportRow row : rows) {
+                    if (row.type == type) {
+                        ps.setInt(1, row.id);
+                        int p = 2;
+                        for (String detail : row.details) {
+                            ps.setString(p++, detail);
+                        }
+                        ps.addBatch();
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    ps.executeBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets displaySize, weight, operatingSystem, camera, wifi, price and
+     * description, starting at parameter index first.
+     */
+    private static void setProductFields(PreparedStatement ps, int first, ImportRow row)
+            throws SQLException {
+        if (row.displaySize == null) {
+            ps.setNull(first, Types.DOUBLE);
+        } else {
+            ps.setDouble(first, row.displaySize);
+        }
+        setInt(ps, first + 1, row.weight);
+        ps.setString(first + 2, row.operatingSystem);
+        ps.setString(first + 3, row.camera);
+        ps.setString(first + 4, row.wifi);
+        if (row.price == null) {
+            ps.setNull(first + 5, Types.DOUBLE);
+        } else {
+            ps.setDouble(first + 5, row.price);
+        }
+        ps.setString(first + 6, row.description);
+    }
+
+    private static void setInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+}
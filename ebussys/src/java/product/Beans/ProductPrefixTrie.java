@@ -0,0 +1,327 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory prefix trie over the model and brand of products, for
+ * typeahead suggestions.
+ *
+ * Each product is inserted under its lower-cased model, its brand
+ * followed by its model, and every word of its model, so "pro" finds
+ * "MacBook Pro". It is a burst trie: a node starts as a leaf listing
+ * every product below it and is split into children only once more
+ * than CANDIDATES keys pass through it. A split node keeps the
+ * CANDIDATES products with the most stock when they were added. So
+ * nodes exist only for prefixes shared by many products, and a lookup
+ * walks at most the length of the prefix, then checks the few
+ * candidates of the node it reached against the whole prefix.
+ *
+ * Products are inserted both under a root for all products and under a
+ * root for their type, so a lookup restricted to laptops gets its own
+ * CANDIDATES even where phones share the prefix.
+ *
+ * The caller ranks the candidates by their current stock (see
+ * ProductCatalog.suggest()); for prefixes matching more than
+ * CANDIDATES products the list is therefore an approximation.
+ *
+ * Thread-safe: lookups share a read lock, changes take the write lock.
+ */
+public class ProductPrefixTrie implements Serializable {
+
+    /** Maximum number of candidates kept per node */
+    public static final int CANDIDATES = 32;
+
+    /** Deepest node; longer prefixes are checked against the candidates there */
+    private static final int MAX_DEPTH = 24;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private static final class Node implements Serializable {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        int[] ids = NO_IDS;
+        int[] ranks = NO_IDS;
+        int size;
+        /** Keys passing through the node */
+        int count;
+        /** Whether the node was split into children */
+        boolean split;
+
+        Node child(char c) {
+            int pos = Arrays.binarySearch(labels, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        Node addChild(char c) {
+            int pos = Arrays.binarySearch(labels, c);
+            if (pos >= 0) {
+                return children[pos];
+            }
+            pos = -pos - 1;
+            labels = insert(labels, pos, c);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, pos);
+            System.arraycopy(children, pos, grown, pos + 1, children.length - pos);
+            grown[pos] = new Node();
+            children = grown;
+            return grown[pos];
+        }
+
+        /** Keeps the id if it ranks among the best CANDIDATES, highest rank first */
+        void offer(int id, int rank) {
+            if (size == CANDIDATES && rank <= ranks[size - 1]) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return;  // reached through another key of the product
+                }
+            }
+            int pos = size;
+            while (pos > 0 && ranks[pos - 1] < rank) {
+                pos--;
+            }
+            if (size < CANDIDATES) {
+                if (size == ids.length) {
+                    int capacity = Math.min(CANDIDATES, Math.max(2, size * 2));
+                    ids = Arrays.copyOf(ids, capacity);
+                    ranks = Arrays.copyOf(ranks, capacity);
+                }
+                size++;
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos - 1);
+            System.arraycopy(ranks, pos, ranks, pos + 1, size - pos - 1);
+            ids[pos] = id;
+            ranks[pos] = rank;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                    System.arraycopy(ranks, i + 1, ranks, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        private static char[] insert(char[] array, int pos, char c) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, pos);
+            System.arraycopy(array, pos, grown, pos + 1, array.length - pos);
+            grown[pos] = c;
+            return grown;
+        }
+    }
+
+    /** Root of the trie over all products */
+    private static final String ALL_TYPES = "";
+
+    /** Roots by lower-cased product type, and ALL_TYPES */
+    private final Map<String, Node> roots = new HashMap<>();
+
+    /** Keys each product was inserted under, for updates */
+    private final Map<Integer, String[]> keys = new HashMap<>();
+
+    /** Root of the type of each product, for updates */
+    private final Map<Integer, String> types = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Builds the trie over a product list.
+     * @param products the products to insert
+     */
+    public ProductPrefixTrie(List<ProductSummary> products) {
+        for (ProductSummary product : products) {
+            insert(product);
+        }
+    }
+
+    /**
+     * Adds a product, or re-inserts it if its model, brand or stock changed.
+     * @param product the product to insert
+     */
+    public void add(ProductSummary product) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            insert(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the candidates for a prefix.
+     *
+     * @param prefix typed text, case-insensitive
+     * @param type product type, e.g. "Laptop", case-insensitive; null for all types
+     * @return ids of up to CANDIDATES products of the type whose model,
+     *         brand or a model word starts with the prefix; empty for a
+     *         blank prefix
+     */
+    public int[] lookup(String prefix, String type) {
+        String term = ProductTrigramIndex.normalize(prefix);
+        if (term.isEmpty()) {
+            return new int[0];
+        }
+        lock.readLock().lock();
+        try {
+            Node node = roots.get(type == null ? ALL_TYPES : ProductTrigramIndex.normalize(type));
+            if (node == null) {
+                return new int[0];
+            }
+            int depth = Math.min(term.length(), MAX_DEPTH);
+            for (int i = 0; i < depth && node.split; i++) {
+                node = node.child(term.charAt(i));
+                if (node == null) {
+                    return new int[0];
+                }
+            }
+            int[] result = new int[node.size];
+            int found = 0;
+            for (int i = 0; i < node.size; i++) {
+                if (hasKeyStartingWith(node.ids[i], term)) {
+                    result[found++] = node.ids[i];
+                }
+            }
+            return Arrays.copyOf(result, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(ProductSummary product) {
+        String[] productKeys = keysOf(product);
+        String type = ProductTrigramIndex.normalize(product.getType());
+        keys.put(product.getId(), productKeys);
+        types.put(product.getId(), type);
+        insert(root(ALL_TYPES), product, productKeys);
+        if (!type.isEmpty()) {
+            insert(root(type), product, productKeys);
+        }
+    }
+
+    private Node root(String type) {
+        return roots.computeIfAbsent(type, k -> {
+            Node root = new Node();
+            root.split = true;
+            return root;
+        });
+    }
+
+    private void insert(Node root, ProductSummary product, String[] productKeys) {
+        for (String key : productKeys) {
+            Node node = root;
+            int end = Math.min(key.length(), MAX_DEPTH);
+            for (int depth = 0; ; depth++) {
+                if (!node.split && node.count >= CANDIDATES && depth < MAX_DEPTH) {
+                    split(node, key.substring(0, depth));
+                }
+                node.count++;
+                node.offer(product.getId(), product.getStockNumber());
+                if (!node.split || depth == end) {
+                    break;
+                }
+                node = node.addChild(key.charAt(depth));
+            }
+        }
+    }
+
+    /**
+     * Turns a leaf into a split node by moving the keys of its products
+     * one level down. The leaf lists all its products, so no product is lost.
+     */
+    private void split(Node node, String prefix) {
+        node.split = true;
+        int depth = prefix.length();
+        for (int i = 0; i < node.size; i++) {
+            for (String key : keys.get(node.ids[i])) {
+                if (key.length() > depth && key.startsWith(prefix)) {
+                    Node child = node.addChild(key.charAt(depth));
+                    child.count++;
+                    child.offer(node.ids[i], node.ranks[i]);
+                }
+            }
+        }
+    }
+
+    private boolean hasKeyStartingWith(int productId, String term) {
+        for (String key : keys.get(productId)) {
+            if (key.startsWith(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a product from the candidate lists along its keys. Lists
+     * are not refilled from other products below them.
+     */
+    private void removeLocked(int productId) {
+        String[] old = keys.remove(productId);
+        String type = types.remove(productId);
+        if (old == null) {
+            return;
+        }
+        removeLocked(roots.get(ALL_TYPES), productId, old);
+        if (!type.isEmpty()) {
+            removeLocked(roots.get(type), productId, old);
+        }
+    }
+
+    private static void removeLocked(Node root, int productId, String[] old) {
+        for (String key : old) {
+            Node node = root;
+            int end = Math.min(key.length(), MAX_DEPTH);
+            for (int depth = 0; node != null; depth++) {
+                node.count--;
+                node.remove(productId);
+                if (!node.split || depth == end) {
+                    break;
+                }
+                node = node.child(key.charAt(depth));
+            }
+        }
+    }
+
+    private static String[] keysOf(ProductSummary product) {
+        String model = ProductTrigramIndex.normalize(product.getModel());
+        String brand = ProductTrigramIndex.normalize(product.getBrand());
+        Set<String> result = new LinkedHashSet<>();
+        result.add(model);
+        result.add(brand.isEmpty() ? model : brand + " " + model);
+        for (int i = 1; i < model.length(); i++) {
+            if (!Character.isLetterOrDigit(model.charAt(i - 1)) && Character.isLetterOrDigit(model.charAt(i))) {
+                result.add(model.substring(i));
+            }
+        }
+        result.remove("");
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the number of inserted products.
+     * @return product count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keys.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
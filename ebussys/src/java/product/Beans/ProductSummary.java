@@ -0,0 +1,126 @@
+package product.beans;
+
+import java.io.Serializable;
+
+/**
+ * Lightweight, read-only view of a product for listings, dropdowns,
+ * search and facets.
+ *
+ * Product uses JOINED inheritance, so loading Product entities also
+ * reads (or joins) the LAPTOP and PHONE tables and hydrates full
+ * entities. A summary holds only columns of the PRODUCT table and is
+ * loaded with a constructor query, see SELECT. The subtype columns are
+ * loaded as entities only where a detail view needs them.
+ */
+public class ProductSummary implements Serializable {
+
+    /**
+     * JPQL selecting summaries; reads only the PRODUCT table.
+     * Append a WHERE clause to restrict it.
+     */
+    public static final String SELECT =
+            "SELECT NEW product.beans.ProductSummary(p.id, TYPE(p), p.brand, p.model, "
+            + "p.operatingSystem, p.displaySize, p.weight, p.price, p.stockNumber) FROM Product p";
+
+    private final Integer id;
+    private final String type;
+    private final String brand;
+    private final String model;
+    private final String operatingSystem;
+    private final double displaySize;
+    private final int weight;
+    private final double price;
+
+    /** Mutable so the catalog can apply committed stock changes */
+    private volatile int stockNumber;
+
+    /**
+     * Constructor used by the SELECT query.
+     *
+     * @param id product id
+     * @param type entity class from the discriminator column
+     * @param brand brand name
+     * @param model model name
+     * @param operatingSystem operating system
+     * @param displaySize display size in inches
+     * @param weight weight in grams
+     * @param price price
+     * @param stockNumber items in stock
+     */
+    public ProductSummary(Integer id, Class<?> type, String brand, String model, String operatingSystem,
+            double displaySize, int weight, double price, int stockNumber) {
+        this.id = id;
+        this.type = type == null ? null : type.getSimpleName();
+        this.brand = brand;
+        this.model = model;
+        this.operatingSystem = operatingSystem;
+        this.displaySize = displaySize;
+        this.weight = weight;
+        this.price = price;
+        this.stockNumber = stockNumber;
+    }
+
+    /**
+     * Creates the summary of a loaded product entity.
+     * @param product the product
+     * @return its summary
+     */
+    public static ProductSummary of(Product product) {
+        return new ProductSummary(product.getId(), product.getClass(), product.getBrand(), product.getModel(),
+                product.getOperatingSystem(), product.getDisplaySize(), product.getWeight(),
+                product.getPrice(), product.getStockNumber());
+    }
+
+    /** Whether the product is a laptop */
+    public boolean isLaptop() {
+        return "Laptop".equals(type);
+    }
+
+    /** Whether the product is a phone */
+    public boolean isPhone() {
+        return "Phone".equals(type);
+    }
+
+    // --- Getters ---
+
+    public Integer getId() {
+        return id;
+    }
+
+    /** Entity name of the product type, e.g. "Laptop" */
+    public String getType() {
+        return type;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+
+    public double getDisplaySize() {
+        return displaySize;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getStockNumber() {
+        return stockNumber;
+    }
+
+    void setStockNumber(int stockNumber) {
+        this.stockNumber = stockNumber;
+    }
+}
@@ -0,0 +1,221 @@
+package product.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over the model and brand of products.
+ *
+ * Every lower-cased model and brand is split into its overlapping
+ * three-character substrings; for each trigram the index keeps the
+ * sorted ids of the products containing it. A substring search looks up
+ * the trigrams of the search text and intersects their id lists,
+ * smallest first, so it touches only products that can match instead of
+ * scanning the PRODUCT table with LIKE '%x%'.
+ *
+ * Trigram matches are candidates only: the caller checks the actual
+ * model and brand (see ProductCatalog.search()). Search texts shorter
+ * than three characters cannot use the index; search() returns null for
+ * them.
+ *
+ * Thread-safe: searches share a read lock, changes take the write lock.
+ */
+public class ProductTrigramIndex implements Serializable {
+
+    /** Sorted, growable list of product ids */
+    private static final class Postings implements Serializable {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    /** Trigram (three chars packed into a long) to the ids containing it */
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /** Trigrams each product was indexed under, for updates and removal */
+    private final Map<Integer, long[]> indexedTrigrams = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a product, or re-indexes it if its model or brand changed.
+     * @param product the product to index
+     */
+    public void add(ProductSummary product) {
+        long[] trigrams = trigramsOf(product);
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            for (long trigram : trigrams) {
+                postings.computeIfAbsent(trigram, k -> new Postings()).add(product.getId());
+            }
+            indexedTrigrams.put(product.getId(), trigrams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product from the index.
+     * @param productId id of the product
+     */
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of products whose model or brand may contain the text.
+     *
+     * @param text search text, case-insensitive
+     * @return sorted candidate ids, or null if the text is too short for the index
+     */
+    public int[] search(String text) {
+        String term = normalize(text);
+        if (term.length() < 3) {
+            return null;
+        }
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            trigrams.add(pack(term, i));
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>(trigrams.size());
+            for (Long trigram : trigrams) {
+                Postings p = postings.get(trigram);
+                if (p == null) {
+                    return new int[0];
+                }
+                lists.add(p);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+            int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+            int size = result.length;
+            for (int l = 1; l < lists.size() && size > 0; l++) {
+                size = intersect(result, size, lists.get(l));
+            }
+            return Arrays.copyOf(result, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed products.
+     * @return indexed product count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexedTrigrams.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-cases a search text or product field the way the index does.
+     * @param text text to normalize, may be null
+     * @return the normalized text, empty for null
+     */
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void removeLocked(int productId) {
+        long[] old = indexedTrigrams.remove(productId);
+        if (old == null) {
+            return;
+        }
+        for (long trigram : old) {
+            Postings p = postings.get(trigram);
+            if (p != null) {
+                p.remove(productId);
+                if (p.size == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the ids in result[0..size) that are also in the postings,
+     * by walking both sorted lists once.
+     * @return the new size of result
+     */
+    private static int intersect(int[] result, int size, Postings other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < other.size; ) {
+            int a = result[i];
+            int b = other.ids[j];
+            if (a == b) {
+                result[kept++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return kept;
+    }
+
+    private static long[] trigramsOf(ProductSummary product) {
+        Set<Long> trigrams = new HashSet<>();
+        for (String field : new String[] {product.getModel(), product.getBrand()}) {
+            String text = normalize(field);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                trigrams.add(pack(text, i));
+            }
+        }
+        long[] result = new long[trigrams.size()];
+        int i = 0;
+        for (Long trigram : trigrams) {
+            result[i++] = trigram;
+        }
+        return result;
+    }
+
+    /** Packs the three chars at position i into one long */
+    private static long pack(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+}
@@ -0,0 +1,61 @@
+package product.beans;
+
+import java.io.Serializable;
+
+/**
+ * Sort order and price range chosen on a stock page.
+ * Applied by ProductCatalog.filter() on the columnar catalog.
+ */
+public class StockListOptions implements Serializable {
+
+    /** Column to sort by */
+    private ProductColumns.SortKey sortKey = ProductColumns.SortKey.CATALOG;
+
+    /** Whether to sort in descending order */
+    private boolean descending;
+
+    /** Lowest price shown, null for no lower bound */
+    private Double minPrice;
+
+    /** Highest price shown, null for no upper bound */
+    private Double maxPrice;
+
+    /** Sort keys offered on the page */
+    public ProductColumns.SortKey[] getSortKeys() {
+        return ProductColumns.SortKey.values();
+    }
+
+    // --- Getters and setters ---
+
+    public ProductColumns.SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public void setSortKey(ProductColumns.SortKey sortKey) {
+        this.sortKey = sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+}
@@ -0,0 +1,101 @@
+package product.beans;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.io.Serializable;
+
+/**
+ * Application-wide service for reserving and releasing product stock.
+ *
+ * Stock is changed with a single conditional UPDATE statement instead of
+ * reading the product, checking the stock in Java and merging it back.
+ * The database checks and decrements the stock atomically, so two
+ * concurrent orders for the same product can never both succeed when
+ * only enough stock for one of them remains.
+ *
+ * Stock of hot products is kept in the HotStockLedger instead, which
+ * avoids the row lock altogether; this bean routes those products there.
+ *
+ * Successful changes are passed on to the ProductCatalog, which applies
+ * them to the cached stock once the transaction commits.
+ *
+ * Methods must be called inside an active transaction; the update joins
+ * the caller's transaction and is rolled back together with it.
+ */
+@Named(value = "stockReservationBean")
+@ApplicationScoped
+public class StockReservationBean implements Serializable {
+
+    /** EntityManager for JPA operations, joins the caller's transaction */
+    @PersistenceContext
+    private EntityManager em;
+
+    /** In-memory ledger for hot products */
+    @Inject
+    private HotStockLedger hotStock;
+
+    /** Shared product catalog whose stock numbers follow the reservations */
+    @Inject
+    private ProductCatalog catalog;
+
+    /**
+     * Atomically deducts the given quantity from a product's stock,
+     * but only if enough stock is available.
+     *
+     * @param productId id of the product to reserve stock for
+     * @param quantity number of items to reserve, must be positive
+     * @return true if the stock was reserved, false if the product does not
+     *         exist or does not have enough stock
+     */
+    public boolean reserve(int productId, int quantity) {
+        if (quantity <= 0) {
+            return false;
+        }
+        boolean reserved;
+        if (hotStock.isHot(productId)) {
+            reserved = hotStock.reserve(productId, quantity);
+        } else {
+            reserved = em.createQuery(
+                    "UPDATE Product p SET p.stockNumber = p.stockNumber - :qty "
+                    + "WHERE p.id = :id AND p.stockNumber >= :qty")
+                    .setParameter("qty", quantity)
+                    .setParameter("id", productId)
+                    .executeUpdate() == 1;
+        }
+        if (reserved) {
+            catalog.adjustStockOnCommit(productId, -quantity);
+        }
+        return reserved;
+    }
+
+    /**
+     * Returns previously reserved stock to a product.
+     *
+     * @param productId id of the product to give stock back to
+     * @param quantity number of items to return, must be positive
+     * @return true if the product was found and updated
+     */
+    public boolean release(int productId, int quantity) {
+        if (quantity <= 0) {
+            return false;
+        }
+        boolean released;
+        if (hotStock.isHot(productId)) {
+            released = hotStock.release(productId, quantity);
+        } else {
+            released = em.createQuery(
+                    "UPDATE Product p SET p.stockNumber = p.stockNumber + :qty WHERE p.id = :id")
+                    .setParameter("qty", quantity)
+                    .setParameter("id", productId)
+                    .executeUpdate() == 1;
+        }
+        if (released) {
+            catalog.adjustStockOnCommit(productId, quantity);
+        }
+        return released;
+    }
+}
@@ -0,0 +1,236 @@
+package product.servlets;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import product.beans.ProductCatalog;
+import product.beans.ProductDetailCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Conditional GET for productDetails.xhtml?id=...
+ *
+ * Answers with the product's ETag and Last-Modified from the
+ * ProductDetailCache, and with 304 Not Modified when the client's copy
+ * is current, before the JSF lifecycle runs. Otherwise the page is
+ * served from the rendered-page cache if it holds the current version,
+ * or rendered by JSF and put into the cache, unless the page marked
+ * itself uncacheable.
+ *
+ * Unknown products and requests without a valid id go straight to JSF.
+ * Mapped after the login filter in web.xml, so only logged-in users
+ * get here; responses are therefore marked private.
+ */
+public class ProductDetailsFilter implements Filter {
+
+    /** Shared catalog telling whether a product exists */
+    @Inject
+    private ProductCatalog catalog;
+
+    /** Product versions and rendered pages */
+    @Inject
+    private ProductDetailCache cache;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        Integer productId = productId(req);
+        if (productId == null || catalog.getProduct(productId) == null
+                || !("GET".equals(req.getMethod()) || "HEAD".equals(req.getMethod()))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ProductDetailCache.Stamp stamp = cache.stamp(productId);
+        String etag = cache.etag(productId, stamp);
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", stamp.getModifiedAt());
+        resp.setHeader("Cache-Control", "private, no-cache");
+        if (notModified(req, etag, stamp.getModifiedAt())) {
+            cache.countNotModified();
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ProductDetailCache.Page page = cache.getPage(productId, etag);
+        if (page != null) {
+            resp.setContentType(page.getContentType());
+            resp.setContentLength(page.getBody().length);
+            if ("GET".equals(req.getMethod())) {
+                resp.getOutputStream().write(page.getBody());
+            }
+            return;
+        }
+        // Pages rendered for a session tracked in the URL carry its id in their links
+        if (!cache.isPageCacheEnabled() || req.isRequestedSessionIdFromURL()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CapturingResponse capture = new CapturingResponse(resp);
+        chain.doFilter(request, capture);
+        byte[] body = capture.getBody();
+        if (capture.cacheable && "GET".equals(req.getMethod())
+                && req.getAttribute(ProductDetailCache.UNCACHEABLE) == null) {
+            cache.putPage(productId, new ProductDetailCache.Page(etag, body, capture.getContentType()));
+        }
+        if (body.length > 0) {
+            resp.setContentLength(body.length);
+            resp.getOutputStream().write(body);
+        }
+    }
+
+    private static Integer productId(HttpServletRequest req) {
+        String id = req.getParameter("id");
+        if (id == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(id.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the validators of the request; If-None-Match takes
+     * precedence over If-Modified-Since, as HTTP requires.
+     */
+    private static boolean notModified(HttpServletRequest req, String etag, long modifiedAt) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            String opaque = etag.substring(2);  // weak comparison ignores W/
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(opaque)
+                        || (tag.startsWith("W/") && tag.substring(2).equals(opaque))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long since = req.getDateHeader("If-Modified-Since");
+            return since >= 0 && modifiedAt <= since;
+        } catch (IllegalArgumentException e) {
+            return false;  // unparsable date
+        }
+    }
+
+    /**
+     * Response collecting the body in memory so it can be cached.
+     * Errors and redirects go to the client directly and are not cached.
+     */
+    private static class CapturingResponse extends HttpServletResponseWrapper {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+        private boolean cacheable = true;
+
+        CapturingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        byte[] getBody() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return body.toByteArray();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (stream == null) {
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        body.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        body.write(b, off, len);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        // The capture buffer never blocks, so writing is always possible
+                        try {
+                            listener.onWritePossible();
+                        } catch (IOException e) {
+                            listener.onError(e);
+                        }
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            cacheable &= sc == SC_OK;
+            super.setStatus(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            cacheable = false;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            cacheable = false;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            cacheable = false;
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void flushBuffer() {
+            // kept until the page is complete
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // the length is that of the captured body
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            // the length is that of the captured body
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package product.servlets;
+
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonWriter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import product.beans.FeedReader;
+import product.beans.ProductImportService;
+
+import java.io.IOException;
+
+/**
+ * Imports laptops and phones streamed in the request body.
+ *
+ * POST the file as the raw body, e.g.
+ * curl --data-binary @products.csv -H "Content-Type: text/csv" .../import/products
+ * Content type application/x-ndjson or format=jsonl selects JSON Lines,
+ * anything else is read as CSV; batchSize sets the batch size.
+ * The body is processed while it is being received and the outcome is
+ * returned as JSON. Registered in web.xml.
+ */
+public class ProductImportServlet extends HttpServlet {
+
+    /** Service performing the import */
+    @Inject
+    private ProductImportService productImport;
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        String contentType = req.getContentType();
+        FeedReader.Format format =
+                "jsonl".equalsIgnoreCase(req.getParameter("format"))
+                || (contentType != null && contentType.startsWith("application/x-ndjson"))
+                ? FeedReader.Format.JSONL : FeedReader.Format.CSV;
+        int batchSize = ProductImportService.DEFAULT_BATCH_SIZE;
+        try {
+            if (req.getParameter("batchSize") != null) {
+                batchSize = Integer.parseInt(req.getParameter("batchSize"));
+            }
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid batchSize");
+            return;
+        }
+
+        ProductImportService.ImportResult result =
+                productImport.importProducts(req.getInputStream(), format, batchSize);
+
+        JsonArrayBuilder rejections = Json.createArrayBuilder();
+        for (String rejection : result.getRejections()) {
+            rejections.add(rejection);
+        }
+        resp.setStatus(result.getError() == null
+                ? HttpServletResponse.SC_OK : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        try (JsonWriter writer = Json.createWriter(resp.getWriter())) {
+            writer.writeObject(Json.createObjectBuilder()
+                    .add("rowsRead", result.getRowsRead())
+                    .add("inserted", result.getInserted())
+                    .add("updated", result.getUpdated())
+                    .add("rejected", result.getRejected())
+                    .add("rowsPerSecond", result.getRowsPerSecond())
+                    .add("error", result.getError() == null ? "" : result.getError())
+                    .add("rejections", rejections)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package product.servlets;
+
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonWriter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import product.beans.ProductCatalog;
+import product.beans.ProductSummary;
+
+import java.io.IOException;
+
+/**
+ * Typeahead suggestions for product models and brands.
+ *
+ * GET .../suggest/products?q=mac&type=Laptop&limit=8 returns a JSON
+ * array of the matching products, most stock first, answered from the
+ * catalog's prefix trie without a database query. type is optional;
+ * limit defaults to DEFAULT_LIMIT and is capped at MAX_LIMIT.
+ * Registered in web.xml; used by the laptop and phone search pages.
+ */
+public class ProductSuggestServlet extends HttpServlet {
+
+    /** Suggestions returned when no limit is given */
+    private static final int DEFAULT_LIMIT = 8;
+
+    /** Largest limit accepted */
+    private static final int MAX_LIMIT = 20;
+
+    /** Shared catalog holding the prefix trie */
+    @Inject
+    private ProductCatalog catalog;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        int limit = DEFAULT_LIMIT;
+        try {
+            if (req.getParameter("limit") != null) {
+                limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(req.getParameter("limit"))));
+            }
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid limit");
+            return;
+        }
+        String type = req.getParameter("type");
+        if (type != null && type.isEmpty()) {
+            type = null;
+        }
+
+        JsonArrayBuilder suggestions = Json.createArrayBuilder();
+        for (ProductSummary p : catalog.suggest(req.getParameter("q"), type, limit)) {
+            suggestions.add(Json.createObjectBuilder()
+                    .add("id", p.getId())
+                    .add("type", p.getType())
+                    .add("brand", p.getBrand() == null ? "" : p.getBrand())
+                    .add("model", p.getModel() == null ? "" : p.getModel())
+                    .add("price", p.getPrice())
+                    .add("stock", p.getStockNumber()));
+        }
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "private, max-age=10");
+        try (JsonWriter writer = Json.createWriter(resp.getWriter())) {
+            writer.writeArray(suggestions.build());
+        }
+    }
+}
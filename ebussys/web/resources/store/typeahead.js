@@ -0,0 +1,46 @@
+/*
+ * Typeahead for the product search pages.
+ * Asks suggest/products for the typed prefix and lists the matches as
+ * links to their detail pages, so staff can go straight to a product
+ * without submitting the search.
+ */
+function ebussysTypeahead(inputId, listId, type) {
+    var input = document.getElementById(inputId);
+    var list = document.getElementById(listId);
+    var timer = null;
+    var latest = 0;
+
+    function render(products) {
+        list.innerHTML = '';
+        products.forEach(function (p) {
+            var item = document.createElement('li');
+            var link = document.createElement('a');
+            link.href = 'productDetails.xhtml?id=' + p.id;
+            link.textContent = p.brand + ' ' + p.model + ' (' + p.stock + ' in stock)';
+            item.appendChild(link);
+            list.appendChild(item);
+        });
+    }
+
+    input.setAttribute('autocomplete', 'off');
+    input.addEventListener('input', function () {
+        clearTimeout(timer);
+        var q = input.value.trim();
+        if (q === '') {
+            render([]);
+            return;
+        }
+        timer = setTimeout(function () {
+            var request = ++latest;
+            fetch('suggest/products?type=' + encodeURIComponent(type) + '&q=' + encodeURIComponent(q),
+                    {credentials: 'same-origin'})
+                .then(function (response) { return response.ok ? response.json() : []; })
+                .then(function (products) {
+                    if (request === latest) {   // ignore answers to older keystrokes
+                        render(products);
+                    }
+                })
+                .catch(function () { render([]); });
+        }, 120);
+    });
+}